@@ -0,0 +1,58 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a GET /customers list body as JSON, Smile and CBOR, with the mappers
+ * the service negotiates. Run with {@link EncodedSizeProfiler} to see the size of the body per format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerEncodingBenchmark {
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<List<Customer>>() {};
+
+    @Param({"json", CustomerFormats.SMILE_VALUE, CustomerFormats.CBOR_VALUE})
+    String format;
+
+    @Param({"100", "10000"})
+    int listSize;
+
+    private ObjectMapper mapper;
+    private List<Customer> customers;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        CustomerFormats formats = new CustomerFormats(Jackson2ObjectMapperBuilder.json().build());
+        mapper = formats.mapper("json".equals(format) ? null : MediaType.valueOf(format));
+        customers = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++)
+            customers.add(CustomerJsonBenchmark.newCustomer(i));
+        encoded = mapper.writeValueAsBytes(customers);
+        EncodedSizeProfiler.encodedBytes = encoded.length;
+    }
+
+    @Benchmark
+    public byte[] encodeCustomers() throws IOException {
+        return mapper.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public List<Customer> decodeCustomers() throws IOException {
+        return mapper.readValue(encoded, CUSTOMER_LIST);
+    }
+}
@@ -0,0 +1,72 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of a single {@link Customer} and of the list bodies returned by GET /customers.
+ * Uses an ObjectMapper configured the way Spring MVC configures its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerJsonBenchmark {
+    private static final TypeReference<List<Customer>> CUSTOMER_LIST = new TypeReference<List<Customer>>() {};
+
+    @Param({"100", "10000"})
+    int listSize;
+
+    private ObjectMapper mapper;
+    private Customer customer;
+    private byte[] customerJson;
+    private List<Customer> customers;
+    private byte[] customersJson;
+
+    static Customer newCustomer(int i) {
+        Customer customer = new Customer(new ObjectId().toString(), "name" + i, "street " + i + ", 9000 Gent");
+        customer.setVersion((long) i);
+        return customer;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        customer = newCustomer(0);
+        customerJson = mapper.writeValueAsBytes(customer);
+        customers = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++)
+            customers.add(newCustomer(i));
+        customersJson = mapper.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws IOException {
+        return mapper.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public Customer deserializeCustomer() throws IOException {
+        return mapper.readValue(customerJson, Customer.class);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomers() throws IOException {
+        return mapper.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public List<Customer> deserializeCustomers() throws IOException {
+        return mapper.readValue(customersJson, CUSTOMER_LIST);
+    }
+}
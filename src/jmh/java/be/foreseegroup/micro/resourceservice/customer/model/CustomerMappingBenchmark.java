@@ -0,0 +1,67 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.DbRefProxyHandler;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.DbRefResolverCallback;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring Data mapping of a {@link Customer} to and from the DBObject that is sent to Mongo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerMappingBenchmark {
+    private MappingMongoConverter converter;
+    private Customer customer;
+    private DBObject document;
+
+    @Setup
+    public void setUp() {
+        MongoMappingContext context = new MongoMappingContext();
+        context.setInitialEntitySet(Collections.singleton(Customer.class));
+        context.afterPropertiesSet();
+        //Customer has no DBRefs, so the resolver is never called
+        converter = new MappingMongoConverter(new DbRefResolver() {
+            @Override
+            public Object resolveDbRef(MongoPersistentProperty property, com.mongodb.DBRef dbref,
+                                       DbRefResolverCallback callback, DbRefProxyHandler proxyHandler) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public com.mongodb.DBRef createDbRef(org.springframework.data.mongodb.core.mapping.DBRef annotation,
+                                                 MongoPersistentEntity<?> entity, Object id) {
+                throw new UnsupportedOperationException();
+            }
+        }, context);
+        converter.afterPropertiesSet();
+
+        customer = CustomerJsonBenchmark.newCustomer(0);
+        document = write();
+    }
+
+    @Benchmark
+    public DBObject write() {
+        DBObject dbObject = new BasicDBObject();
+        converter.write(customer, dbObject);
+        return dbObject;
+    }
+
+    @Benchmark
+    public Customer read() {
+        return converter.read(Customer.class, document);
+    }
+}
@@ -0,0 +1,37 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.profile.ProfilerResult;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Reports the size of the body that {@link CustomerEncodingBenchmark} encodes and decodes as a secondary
+ * result, in bytes, next to the timings of its format. Enabled with {@code -prof} and the name of this class.
+ */
+public class EncodedSizeProfiler implements InternalProfiler {
+    static volatile long encodedBytes;
+
+    @Override
+    public String getDescription() {
+        return "Size of the encoded customer list body";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        if (!benchmarkParams.getBenchmark().startsWith(CustomerEncodingBenchmark.class.getName()))
+            return Collections.emptyList();
+        return Collections.singletonList(new ProfilerResult("encoded.size", encodedBytes, "bytes", AggregationPolicy.AVG));
+    }
+}
@@ -0,0 +1,115 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerEventOutbox;
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link CustomerService} handler methods, called directly against an {@link InMemoryCustomerRepository},
+ * so the numbers cover the controller, the cache and the object copies but no Mongo or HTTP I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerServiceBenchmark {
+    @Param({"10000"})
+    int customerCount;
+
+    /**
+     * Whether reads are answered by a loaded {@link CustomerReadModel} instead of the cache and the repository.
+     */
+    @Param({"false", "true"})
+    boolean readModel;
+
+    private CustomerService service;
+    private String[] ids;
+    private String currentPageETag;
+
+    @Setup
+    public void setUp() {
+        InMemoryCustomerRepository repo = new InMemoryCustomerRepository();
+        ids = new String[customerCount];
+        for (int i = 0; i < customerCount; i++)
+            ids[i] = repo.save(new Customer("name" + i, "address" + i)).getId();
+
+        service = new CustomerService();
+        service.repo = repo;
+        //Without a batching window every cache miss is looked up on its own
+        service.cache = new CustomerCache(repo, new CustomerBatchLoader(repo, 0, 1), customerCount, 60);
+        //Runs the work on the calling thread, so every handler has its result set when it returns
+        service.workQueue = new CustomerWorkQueue(Runnable::run, 5000);
+        service.creates = new CustomerGroupCommit(repo, 0, 1);
+        service.events = new CustomerEventOutbox(events -> { }, false, 1, 1, 0, 1, 0, 0);
+        service.readModel = new CustomerReadModel(repo, service.events, readModel, 1000, 5000);
+        if (readModel)
+            service.readModel.load();
+        service.formats = new CustomerFormats(Jackson2ObjectMapperBuilder.json().build());
+        service.defaultPageSize = 100;
+        service.maxPageSize = 1000;
+        currentPageETag = CustomerETags.ofRevision(readModel ? service.readModel.revision() : repo.revision());
+
+        //getAll builds its next-page link from the current request
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/customers")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private String randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public Object getById() {
+        return service.getById(randomId(), null, null, null).getResult();
+    }
+
+    @Benchmark
+    public Object getByIdNotFound() {
+        return service.getById("unexistingid", null, null, null).getResult();
+    }
+
+    /**
+     * Revalidation of a cached copy that is still current, answered with 304.
+     */
+    @Benchmark
+    public Object getByIdNotModified() {
+        return service.getById(randomId(), null, "\"0\"", null).getResult();
+    }
+
+    @Benchmark
+    public Object getAllPage() {
+        return service.getAll(randomId(), 100, null, null, null).getResult();
+    }
+
+    @Benchmark
+    public Object getAllPageIdAndName() {
+        return service.getAll(randomId(), 100, "id,name", null, null).getResult();
+    }
+
+    /**
+     * Revalidation of a page with the ETag of the current revision, answered with 304.
+     */
+    @Benchmark
+    public Object getAllPageNotModified() {
+        return service.getAll(randomId(), 100, null, currentPageETag, null).getResult();
+    }
+
+    @Benchmark
+    public Object update() {
+        return service.update(randomId(), new Customer("nameEdited", "addressEdited"), null).getResult();
+    }
+}
@@ -0,0 +1,286 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.bson.types.ObjectId;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link CustomerRepository} stand-in that keeps customers in a sorted map, so the benchmarks
+ * measure the service layer without any Mongo I/O. Stored instances are copied on the way
+ * in and out, like documents would be.
+ */
+public class InMemoryCustomerRepository implements CustomerRepository {
+    private final ConcurrentSkipListMap<String, Customer> customers = new ConcurrentSkipListMap<>();
+    private final AtomicLong revision = new AtomicLong();
+
+    private static Customer copy(Customer customer) {
+        if (customer == null)
+            return null;
+        Customer copy = new Customer(customer.getId(), customer.getName(), customer.getAddress());
+        copy.setVersion(customer.getVersion());
+        return copy;
+    }
+
+    private static Customer copy(Customer customer, Set<String> fields) {
+        if (customer == null || fields == null)
+            return copy(customer);
+        Customer copy = new Customer();
+        copy.setId(customer.getId());
+        copy.setVersion(customer.getVersion());
+        if (fields.contains("name"))
+            copy.setName(customer.getName());
+        if (fields.contains("address"))
+            copy.setAddress(customer.getAddress());
+        return copy;
+    }
+
+    @Override
+    public <S extends Customer> S save(S customer) {
+        if (customer.getId() == null)
+            customer.setId(new ObjectId().toString());
+        customer.setVersion(customer.getVersion() == null ? 0L : customer.getVersion() + 1);
+        customers.put(customer.getId(), copy(customer));
+        revision.incrementAndGet();
+        return customer;
+    }
+
+    @Override
+    public <S extends Customer> Iterable<S> save(Iterable<S> entities) {
+        for (S customer : entities)
+            save(customer);
+        return entities;
+    }
+
+    @Override
+    public Customer findOne(String id) {
+        return copy(customers.get(id));
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return customers.containsKey(id);
+    }
+
+    @Override
+    public Iterable<Customer> findAll() {
+        List<Customer> all = new ArrayList<>(customers.size());
+        for (Customer customer : customers.values())
+            all.add(copy(customer));
+        return all;
+    }
+
+    @Override
+    public Iterable<Customer> findAll(Iterable<String> ids) {
+        List<Customer> found = new ArrayList<>();
+        for (String id : ids) {
+            Customer customer = findOne(id);
+            if (customer != null)
+                found.add(customer);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return customers.size();
+    }
+
+    @Override
+    public void delete(String id) {
+        customers.remove(id);
+    }
+
+    @Override
+    public void delete(Customer customer) {
+        customers.remove(customer.getId());
+    }
+
+    @Override
+    public void delete(Iterable<? extends Customer> entities) {
+        for (Customer customer : entities)
+            delete(customer);
+    }
+
+    @Override
+    public void deleteAll() {
+        customers.clear();
+    }
+
+    @Override
+    public List<Customer> findPage(String after, int limit) {
+        return findPage(after, limit, null);
+    }
+
+    @Override
+    public List<Customer> findPage(String after, int limit, Set<String> fields) {
+        NavigableMap<String, Customer> tail = after == null ? customers : customers.tailMap(after, false);
+        List<Customer> page = new ArrayList<>(limit);
+        for (Customer customer : tail.values()) {
+            if (page.size() == limit)
+                break;
+            page.add(copy(customer, fields));
+        }
+        return page;
+    }
+
+    @Override
+    public List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit) {
+        return search(namePrefix, addressPrefix, afterKey, after, limit, null);
+    }
+
+    @Override
+    public List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit,
+                                 Set<String> fields) {
+        String nameKey = Customer.searchKey(namePrefix);
+        String addressKey = Customer.searchKey(addressPrefix);
+        Function<Customer, String> sortKey = namePrefix != null ? Customer::getNameKey : Customer::getAddressKey;
+        Comparator<Customer> order = Comparator.comparing(sortKey).thenComparing(Customer::getId);
+        if (after != null && afterKey == null && customers.containsKey(after))
+            afterKey = sortKey.apply(customers.get(after));
+        Customer last = after == null || afterKey == null ? null : new Customer(after, afterKey, afterKey);
+
+        List<Customer> found = new ArrayList<>();
+        for (Customer customer : customers.values()) {
+            if (startsWith(customer.getName(), nameKey) && startsWith(customer.getAddress(), addressKey)
+                    && (last == null || order.compare(customer, last) > 0))
+                found.add(customer);
+        }
+        found.sort(order);
+        List<Customer> page = new ArrayList<>(Math.min(limit, found.size()));
+        for (Customer customer : found.subList(0, Math.min(limit, found.size())))
+            page.add(copy(customer, fields));
+        return page;
+    }
+
+    private static boolean startsWith(String value, String prefixKey) {
+        return prefixKey == null || (value != null && Customer.searchKey(value).startsWith(prefixKey));
+    }
+
+    @Override
+    public <T> T readTogether(Supplier<T> reads) {
+        return reads.get();
+    }
+
+    @Override
+    public int backfillSearchKeys() {
+        return 0;
+    }
+
+    @Override
+    public void streamAll(Consumer<Customer> consumer) {
+        for (Customer customer : customers.values())
+            consumer.accept(copy(customer));
+    }
+
+    /**
+     * Nothing is stamped, so every customer counts as modified.
+     */
+    @Override
+    public void streamModifiedSince(Date since, Consumer<Customer> consumer) {
+        streamAll(consumer);
+    }
+
+    @Override
+    public void streamIds(Consumer<String> consumer) {
+        customers.keySet().forEach(consumer);
+    }
+
+    @Override
+    public Customer findOne(String id, Set<String> fields) {
+        return copy(customers.get(id), fields);
+    }
+
+    @Override
+    public Long findVersion(String id) {
+        Customer customer = customers.get(id);
+        return customer == null ? null : customer.getVersion();
+    }
+
+    @Override
+    public String revision() {
+        return Long.toString(revision.get());
+    }
+
+    @Override
+    public Customer updateFields(String id, Customer fields, Long expectedVersion) {
+        Customer[] updated = new Customer[1];
+        customers.computeIfPresent(id, (key, current) -> {
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion()))
+                return current;
+            updated[0] = new Customer(id, fields.getName(), fields.getAddress());
+            updated[0].setVersion(current.getVersion() == null ? 1L : current.getVersion() + 1);
+            return updated[0];
+        });
+        if (updated[0] != null)
+            revision.incrementAndGet();
+        return copy(updated[0]);
+    }
+
+    @Override
+    public Customer upsert(Customer customer) {
+        if (customer.getId() != null) {
+            Customer updated = updateFields(customer.getId(), customer, null);
+            if (updated != null)
+                return updated;
+        }
+        customer.setVersion(null);
+        return save(customer);
+    }
+
+    @Override
+    public boolean remove(String id, Long expectedVersion) {
+        Customer current = customers.get(id);
+        if (current == null || (expectedVersion != null && !expectedVersion.equals(current.getVersion())))
+            return false;
+        if (!customers.remove(id, current))
+            return false;
+        revision.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public List<BulkItemResult> bulkWrite(List<BulkOperation> operations, int firstIndex, boolean ordered) {
+        List<BulkItemResult> results = new ArrayList<>(operations.size());
+        boolean stopped = false;
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation operation = operations.get(i);
+            if (stopped) {
+                results.add(BulkItemResult.notExecuted(firstIndex + i, operation));
+                continue;
+            }
+            String id = operation.getId();
+            int status;
+            switch (operation.getOp()) {
+                case CREATE:
+                    Customer customer = operation.getCustomer();
+                    customer.setVersion(null);
+                    id = save(customer).getId();
+                    status = HttpStatus.OK.value();
+                    break;
+                case UPDATE:
+                    status = updateFields(id, operation.getCustomer(), null) != null
+                            ? HttpStatus.OK.value() : HttpStatus.BAD_REQUEST.value();
+                    break;
+                default:
+                    status = remove(id, null) ? HttpStatus.NO_CONTENT.value() : HttpStatus.BAD_REQUEST.value();
+            }
+            results.add(new BulkItemResult(firstIndex + i, operation.getOp(), id, status, null));
+            stopped = ordered && status >= HttpStatus.BAD_REQUEST.value();
+        }
+        return results;
+    }
+}
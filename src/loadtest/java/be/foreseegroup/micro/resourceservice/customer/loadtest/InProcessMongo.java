@@ -0,0 +1,18 @@
+package be.foreseegroup.micro.resourceservice.customer.loadtest;
+
+import com.github.fakemongo.Fongo;
+import com.mongodb.Mongo;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Replaces the Mongo client with an in-process Fongo instance, so a run needs no database.
+ * Deliberately not a {@code @Configuration}: the application's component scan covers this package,
+ * and this class must only be active when it is passed as a source explicitly.
+ */
+public class InProcessMongo {
+
+    @Bean
+    public Mongo mongo() {
+        return new Fongo("loadtest").getMongo();
+    }
+}
@@ -0,0 +1,256 @@
+package be.foreseegroup.micro.resourceservice.customer.loadtest;
+
+import be.foreseegroup.micro.resourceservice.customer.CustomerServiceApplication;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import be.foreseegroup.micro.resourceservice.customer.service.CustomerRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the customer service in-process, with Eureka disabled and an in-process Mongo unless
+ * {@code loadtest.mongo-uri} is set, and drives it over HTTP with the mix described by {@link Workload}.
+ * <p>
+ * Requests are issued on a fixed schedule (an open workload) regardless of how fast earlier
+ * requests complete, and every latency is measured from the moment the request was scheduled
+ * rather than from the moment it was sent. A server that stalls therefore shows up in the
+ * percentiles instead of silently lowering the request rate (coordinated omission). Requests wait
+ * for a connection in a queue of {@code loadtest.queue}; a request scheduled while that queue is
+ * full is dropped and counted as an error, so a stalled server cannot exhaust the heap of the run.
+ * Errors and drops are only counted in the measured phase, like latencies.
+ * <p>
+ * The JSON report holds the configuration, the achieved throughput, latency percentiles per
+ * operation and the GC activity of the JVM during the measured phase. Client and server share
+ * that JVM, so GC numbers include the load generator.
+ * <p>
+ * The in-process Mongo (Fongo) answers queries by scanning, so sorted list pages get slow as the
+ * collection grows. Its numbers are meant for comparing builds with each other; point
+ * {@code loadtest.mongo-uri} at a real mongod for absolute capacity figures.
+ */
+public class LoadTest {
+    private static final String NAME = "loadtest customer";
+
+    private final Workload workload = new Workload();
+    private final Map<Workload.Operation, Histogram> latencies = new EnumMap<>(Workload.Operation.class);
+    private final Histogram total = new ConcurrentHistogram(3);
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong maxScheduleLagNanos = new AtomicLong();
+
+    private String baseUrl;
+    private ZipfKeys keys;
+    private CloseableHttpClient client;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run(args);
+    }
+
+    private void run(String[] args) throws Exception {
+        for (Workload.Operation operation : Workload.Operation.values())
+            latencies.put(operation, new ConcurrentHistogram(3));
+
+        ConfigurableApplicationContext context = boot(args);
+        try {
+            baseUrl = "http://localhost:" + ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+            keys = new ZipfKeys(seed(context.getBean(CustomerRepository.class)), workload.skew);
+            client = HttpClients.custom()
+                    .setMaxConnTotal(workload.connections)
+                    .setMaxConnPerRoute(workload.connections)
+                    .build();
+
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(workload.warmupSeconds);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(workload.durationSeconds);
+            Map<String, long[]> gcBefore = null;
+
+            ExecutorService senders = new ThreadPoolExecutor(workload.connections, workload.connections,
+                    0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(workload.queue));
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / workload.rate);
+            long start = System.nanoTime();
+            for (long i = 0; ; i++) {
+                long scheduled = start + i * intervalNanos;
+                if (scheduled >= measureUntil)
+                    break;
+                if (gcBefore == null && scheduled >= measureFrom)
+                    gcBefore = gcSnapshot();
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0)
+                    LockSupport.parkNanos(wait);
+                maxScheduleLagNanos.accumulateAndGet(System.nanoTime() - scheduled, Math::max);
+                boolean measured = scheduled >= measureFrom;
+                Workload.Operation operation = workload.operation(ThreadLocalRandom.current().nextInt(100));
+                try {
+                    senders.execute(() -> send(operation, scheduled, measured));
+                } catch (RejectedExecutionException e) {
+                    if (measured) {
+                        dropped.incrementAndGet();
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+            senders.shutdown();
+            senders.awaitTermination(1, TimeUnit.MINUTES);
+            Map<String, long[]> gcAfter = gcSnapshot();
+
+            write(report(gcBefore, gcAfter));
+        } finally {
+            if (client != null)
+                client.close();
+            context.close();
+        }
+    }
+
+    private ConfigurableApplicationContext boot(String[] args) {
+        List<Object> sources = new ArrayList<>();
+        sources.add(CustomerServiceApplication.class);
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("eureka.client.enabled", false);
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.be.foreseegroup", "WARN");
+        if (workload.mongoUri.isEmpty())
+            sources.add(InProcessMongo.class);
+        else
+            properties.put("spring.data.mongodb.uri", workload.mongoUri);
+        return new SpringApplicationBuilder(sources.toArray()).properties(properties).run(args);
+    }
+
+    private String[] seed(CustomerRepository repo) {
+        repo.deleteAll();
+        List<Customer> customers = new ArrayList<>(workload.customers);
+        for (int i = 0; i < workload.customers; i++)
+            customers.add(new Customer(NAME + i, "street " + i + ", 9000 Gent"));
+        String[] ids = new String[workload.customers];
+        int i = 0;
+        for (Customer customer : repo.save(customers))
+            ids[i++] = customer.getId();
+        return ids;
+    }
+
+    private void send(Workload.Operation operation, long scheduled, boolean measured) {
+        boolean failed;
+        try {
+            HttpResponse response = client.execute(request(operation));
+            EntityUtils.consume(response.getEntity());
+            failed = response.getStatusLine().getStatusCode() >= 400;
+        } catch (Exception e) {
+            failed = true;
+        }
+        if (measured) {
+            if (failed)
+                errors.incrementAndGet();
+            long latency = System.nanoTime() - scheduled;
+            latencies.get(operation).recordValue(latency);
+            total.recordValue(latency);
+        }
+    }
+
+    private HttpUriRequest request(Workload.Operation operation) {
+        switch (operation) {
+            case PUT: {
+                HttpPut put = new HttpPut(baseUrl + "/customers/" + keys.next());
+                put.setEntity(body());
+                return put;
+            }
+            case POST: {
+                HttpPost post = new HttpPost(baseUrl + "/customers");
+                post.setEntity(body());
+                return post;
+            }
+            case LIST:
+                return new HttpGet(baseUrl + "/customers?limit=20&after=" + keys.next());
+            default:
+                return new HttpGet(baseUrl + "/customers/" + keys.next());
+        }
+    }
+
+    private static StringEntity body() {
+        int i = ThreadLocalRandom.current().nextInt(1000000);
+        return new StringEntity("{\"name\":\"" + NAME + i + "\",\"address\":\"street " + i + "\"}", ContentType.APPLICATION_JSON);
+    }
+
+    private static Map<String, long[]> gcSnapshot() {
+        Map<String, long[]> snapshot = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            snapshot.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+        return snapshot;
+    }
+
+    private Map<String, Object> report(Map<String, long[]> gcBefore, Map<String, long[]> gcAfter) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("workload", workload.describe());
+        report.put("requests", total.getTotalCount());
+        report.put("errors", errors.get());
+        report.put("dropped", dropped.get());
+        report.put("throughput", (double) total.getTotalCount() / workload.durationSeconds);
+        report.put("maxScheduleLagMs", maxScheduleLagNanos.get() / 1e6);
+        report.put("latencyMs", latencies(total));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> {
+            if (histogram.getTotalCount() > 0)
+                operations.put(operation.name().toLowerCase(), latencies(histogram));
+        });
+        report.put("operations", operations);
+        Map<String, Object> gc = new LinkedHashMap<>();
+        gcAfter.forEach((name, after) -> {
+            long[] before = gcBefore == null ? new long[2] : gcBefore.getOrDefault(name, new long[2]);
+            Map<String, Object> collector = new LinkedHashMap<>();
+            collector.put("collections", after[0] - before[0]);
+            collector.put("timeMs", after[1] - before[1]);
+            gc.put(name, collector);
+        });
+        report.put("gc", gc);
+        return report;
+    }
+
+    private static Map<String, Object> latencies(Histogram histogram) {
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        latencies.put("count", histogram.getTotalCount());
+        latencies.put("mean", histogram.getMean() / 1e6);
+        latencies.put("p50", histogram.getValueAtPercentile(50) / 1e6);
+        latencies.put("p90", histogram.getValueAtPercentile(90) / 1e6);
+        latencies.put("p99", histogram.getValueAtPercentile(99) / 1e6);
+        latencies.put("p999", histogram.getValueAtPercentile(99.9) / 1e6);
+        latencies.put("max", histogram.getMaxValue() / 1e6);
+        return latencies;
+    }
+
+    private void write(Map<String, Object> report) throws Exception {
+        File file = new File(workload.report);
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(file, report);
+        System.out.println(mapper.writeValueAsString(report));
+    }
+}
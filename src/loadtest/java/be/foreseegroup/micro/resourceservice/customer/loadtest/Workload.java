@@ -0,0 +1,73 @@
+package be.foreseegroup.micro.resourceservice.customer.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The knobs of a load test run, read from {@code loadtest.*} system properties.
+ */
+class Workload {
+    enum Operation {
+        GET, PUT, POST, LIST
+    }
+
+    final double rate = Double.parseDouble(property("rate", "500"));
+    final int warmupSeconds = Integer.parseInt(property("warmup-seconds", "10"));
+    final int durationSeconds = Integer.parseInt(property("duration-seconds", "30"));
+    final int customers = Integer.parseInt(property("customers", "10000"));
+    final double skew = Double.parseDouble(property("skew", "0.99"));
+    final String mix = property("mix", "get:80,put:10,post:5,list:5");
+    final int connections = Integer.parseInt(property("connections", "64"));
+    //Requests scheduled while every connection is busy wait here, once it is full they are dropped
+    final int queue = Integer.parseInt(property("queue", "1000"));
+    final String mongoUri = property("mongo-uri", "");
+    final String report = property("report", "build/reports/loadtest/result.json");
+
+    private final Operation[] operations = new Operation[100];
+
+    Workload() {
+        Map<Operation, Integer> weights = weights();
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int index = 0;
+        int cumulative = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            cumulative += weight.getValue();
+            while (index < operations.length && index < cumulative * operations.length / total)
+                operations[index++] = weight.getKey();
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private Map<Operation, Integer> weights() {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.valueOf(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * @param percentile a uniformly drawn number in [0, 100)
+     */
+    Operation operation(int percentile) {
+        return operations[percentile];
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("rate", rate);
+        description.put("warmupSeconds", warmupSeconds);
+        description.put("durationSeconds", durationSeconds);
+        description.put("customers", customers);
+        description.put("skew", skew);
+        description.put("mix", weights());
+        description.put("connections", connections);
+        description.put("queue", queue);
+        description.put("mongo", mongoUri.isEmpty() ? "in-process" : "external");
+        return description;
+    }
+}
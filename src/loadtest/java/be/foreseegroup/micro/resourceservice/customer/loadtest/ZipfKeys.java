@@ -0,0 +1,30 @@
+package be.foreseegroup.micro.resourceservice.customer.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks keys with a Zipf distribution: the key at rank r is picked with a probability
+ * proportional to 1 / r^skew. A skew of 0 is uniform; around 1 a few hot keys get most traffic.
+ */
+class ZipfKeys {
+    private final String[] keys;
+    private final double[] cumulative;
+
+    ZipfKeys(String[] keys, double skew) {
+        this.keys = keys;
+        this.cumulative = new double[keys.length];
+        double sum = 0;
+        for (int rank = 1; rank <= keys.length; rank++) {
+            sum += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++)
+            cumulative[i] /= sum;
+    }
+
+    String next() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return keys[Math.min(index < 0 ? -index - 1 : index, keys.length - 1)];
+    }
+}
@@ -0,0 +1,167 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured access log for the /customers endpoints, written off the request path.
+ * <p>
+ * {@link #record} only decides whether the request is logged and hands the entry to a lock-free
+ * ring buffer; a background thread formats the entries and writes them to the
+ * {@code be.foreseegroup.micro.resourceservice.customer.access} logger. When that thread falls
+ * behind, for example because the disk is slow, new entries are dropped and counted instead of
+ * blocking requests.
+ * <p>
+ * Successful requests are sampled with {@code customers.access-log.sample-rate}; failed requests
+ * are always logged. On top of that, at most {@code customers.access-log.max-per-second} entries
+ * are accepted per second.
+ */
+@Component
+public class AccessLog implements SmartLifecycle, PublicMetrics {
+    /**
+     * Request attribute with the number of customers or results in the response.
+     */
+    public static final String RESULT_SIZE = AccessLog.class.getName() + ".resultSize";
+
+    private static final Logger LOG = LoggerFactory.getLogger("be.foreseegroup.micro.resourceservice.customer.access");
+    private static final String PREFIX = "accesslog.customers.";
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int maxPerSecond;
+    private final MpscRingBuffer<AccessLogEntry> buffer;
+
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger inCurrentSecond = new AtomicInteger();
+
+    private final AtomicLong logged = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public AccessLog(@Value("${customers.access-log.enabled:true}") boolean enabled,
+                     @Value("${customers.access-log.sample-rate:1.0}") double sampleRate,
+                     @Value("${customers.access-log.max-per-second:1000}") int maxPerSecond,
+                     @Value("${customers.access-log.buffer-size:8192}") int bufferSize) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+    }
+
+    public void record(AccessLogEntry entry) {
+        if (!enabled || !LOG.isInfoEnabled())
+            return;
+        if (entry.getStatus() < 400 && sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.incrementAndGet();
+            return;
+        }
+        if (!permit()) {
+            rateLimited.incrementAndGet();
+            return;
+        }
+        if (!buffer.offer(entry))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Fixed one-second windows. The counter reset races with concurrent increments, so a window
+     * can let a few more entries through than the limit, which is fine for shedding log volume.
+     */
+    private boolean permit() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long current = currentSecond.get();
+        if (second != current && currentSecond.compareAndSet(current, second))
+            inCurrentSecond.set(0);
+        return inCurrentSecond.incrementAndGet() <= maxPerSecond;
+    }
+
+    private void write() {
+        while (running || buffer.size() > 0) {
+            AccessLogEntry entry = buffer.poll();
+            if (entry == null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            try {
+                LOG.info(entry.format());
+                logged.incrementAndGet();
+            } catch (RuntimeException e) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running)
+            return;
+        running = true;
+        writer = new Thread(this::write, "customer-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running)
+            return;
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "logged", logged.get()));
+        metrics.add(new Metric<>(PREFIX + "sampledOut", sampledOut.get()));
+        metrics.add(new Metric<>(PREFIX + "rateLimited", rateLimited.get()));
+        metrics.add(new Metric<>(PREFIX + "dropped", dropped.get()));
+        metrics.add(new Metric<>(PREFIX + "queued", buffer.size()));
+        return metrics;
+    }
+}
@@ -0,0 +1,18 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class AccessLogConfiguration extends WebMvcConfigurerAdapter {
+
+    @Autowired
+    AccessLog accessLog;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AccessLogInterceptor(accessLog)).addPathPatterns("/customers/**");
+    }
+}
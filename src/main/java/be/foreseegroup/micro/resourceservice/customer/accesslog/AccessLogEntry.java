@@ -0,0 +1,46 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+/**
+ * One request in the access log. Formatting into a line is left to the writer thread.
+ */
+public class AccessLogEntry {
+    private final long timestamp;
+    private final String httpMethod;
+    private final String handler;
+    private final String id;
+    private final int status;
+    private final long latencyNanos;
+    private final Integer resultSize;
+
+    public AccessLogEntry(long timestamp, String httpMethod, String handler, String id, int status,
+                          long latencyNanos, Integer resultSize) {
+        this.timestamp = timestamp;
+        this.httpMethod = httpMethod;
+        this.handler = handler;
+        this.id = id;
+        this.status = status;
+        this.latencyNanos = latencyNanos;
+        this.resultSize = resultSize;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * key=value pairs, so the lines can be parsed without a schema. Absent values are left out.
+     */
+    String format() {
+        StringBuilder line = new StringBuilder(128)
+                .append("ts=").append(timestamp)
+                .append(" method=").append(httpMethod)
+                .append(" handler=").append(handler);
+        if (id != null)
+            line.append(" id=").append(id);
+        line.append(" status=").append(status)
+                .append(" latencyMs=").append(latencyNanos / 1000 / 1000.0);
+        if (resultSize != null)
+            line.append(" size=").append(resultSize);
+        return line.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Hands an {@link AccessLogEntry} for every completed request to the {@link AccessLog}.
+ * Everything it records is already known to the request, nothing is looked up again.
+ */
+public class AccessLogInterceptor extends HandlerInterceptorAdapter {
+    private static final String START_ATTRIBUTE = AccessLogInterceptor.class.getName() + ".start";
+
+    private final AccessLog accessLog;
+
+    public AccessLogInterceptor(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //Async requests are dispatched more than once, keep the time of the first dispatch
+        if (request.getAttribute(START_ATTRIBUTE) == null)
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        if (start == null || !(handler instanceof HandlerMethod))
+            return;
+        Map<?, ?> pathVariables = (Map<?, ?>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = pathVariables == null ? null : (String) pathVariables.get("id");
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        accessLog.record(new AccessLogEntry(System.currentTimeMillis(), request.getMethod(),
+                ((HandlerMethod) handler).getMethod().getName(), id, status,
+                System.nanoTime() - start, (Integer) request.getAttribute(AccessLog.RESULT_SIZE)));
+    }
+}
@@ -0,0 +1,65 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Producers claim a sequence number with a CAS on the tail and publish into the claimed slot;
+ * {@link #offer} fails instead of waiting when the buffer is full. The consumer owns the head and
+ * only sees a slot once its element has been published.
+ */
+class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return {@code false} if the buffer is full
+     */
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= slots.length())
+                return false;
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) (sequence & mask), element);
+        return true;
+    }
+
+    /**
+     * Only to be called from the consumer thread.
+     *
+     * @return the oldest element, or {@code null} if none has been published yet
+     */
+    E poll() {
+        long sequence = head.get();
+        int index = (int) (sequence & mask);
+        E element = slots.get(index);
+        if (element == null)
+            return null;
+        slots.lazySet(index, null);
+        head.lazySet(sequence + 1);
+        return element;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,35 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Collection;
+
+/**
+ * Notes the size of every response body, as the number of elements for collections and 1
+ * otherwise, so the access log can report it without touching the body again.
+ */
+@ControllerAdvice
+public class ResultSizeAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null && request instanceof ServletServerHttpRequest) {
+            int size = body instanceof Collection ? ((Collection<?>) body).size() : 1;
+            ((ServletServerHttpRequest) request).getServletRequest().setAttribute(AccessLog.RESULT_SIZE, size);
+        }
+        return body;
+    }
+}
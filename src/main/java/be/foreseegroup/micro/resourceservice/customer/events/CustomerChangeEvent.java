@@ -0,0 +1,88 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Published to the customer events exchange after a customer was created, updated or deleted.
+ * Deletes carry no customer.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CustomerChangeEvent {
+    public enum Type {
+        CREATED, UPDATED, DELETED;
+
+        public String routingKey() {
+            return "customer." + name().toLowerCase();
+        }
+    }
+
+    private Type type;
+    private String customerId;
+    private Long version;
+    private Customer customer;
+    private long timestamp;
+
+    public CustomerChangeEvent() {
+    }
+
+    public CustomerChangeEvent(Type type, String customerId, Customer customer) {
+        this.type = type;
+        this.customerId = customerId;
+        this.version = customer == null ? null : customer.getVersion();
+        this.customer = customer;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static CustomerChangeEvent created(Customer customer) {
+        return new CustomerChangeEvent(Type.CREATED, customer.getId(), customer);
+    }
+
+    public static CustomerChangeEvent updated(Customer customer) {
+        return new CustomerChangeEvent(Type.UPDATED, customer.getId(), customer);
+    }
+
+    public static CustomerChangeEvent deleted(String customerId) {
+        return new CustomerChangeEvent(Type.DELETED, customerId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
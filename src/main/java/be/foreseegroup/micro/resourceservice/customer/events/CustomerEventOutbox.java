@@ -0,0 +1,208 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Decouples publishing change events from the request that caused them.
+ * <p>
+ * {@link #publish} offers the event to a bounded in-memory queue. A single background thread drains the
+ * queue in batches of up to {@code customers.events.batch-size}, waiting at most
+ * {@code customers.events.linger-ms} for a batch to fill, and hands every batch to the
+ * {@link CustomerEventSender}. A batch the broker did not confirm is retried with an exponential backoff,
+ * from {@code customers.events.retry-backoff-ms} up to {@code customers.events.max-backoff-ms}, until it is
+ * confirmed; a positive {@code customers.events.max-attempts} drops it after that many attempts instead.
+ * {@link #publish} never blocks the write that caused the event: while the broker is down the queue fills
+ * up, and once it is full further events are dropped. On shutdown the queue is drained first.
+ * The sender is resolved on the first batch, so the AMQP beans can be created lazily.
+ * <p>
+ * Events are lost, and counted, when:
+ * <ul>
+ * <li>they are published while the queue is full, which takes an outage of the broker long enough to fill
+ * {@code customers.events.queue-capacity} events;</li>
+ * <li>the process dies, with the queued events and the batch being sent, since the queue is only kept in
+ * memory and is not written together with the change it describes;</li>
+ * <li>the queue is not drained within 30 seconds on shutdown, or a batch is still not confirmed after
+ * {@code customers.events.max-attempts} when that is set.</li>
+ * </ul>
+ * Consumers that cannot accept that have to reconcile with the collection.
+ * <p>
+ * Listeners added with {@link #addListener} are called on the publishing thread for every event,
+ * also when publishing to the broker is disabled.
+ */
+@Component
+public class CustomerEventOutbox implements SmartLifecycle, PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(CustomerEventOutbox.class);
+    private static final String PREFIX = "events.customers.";
+
+    private final CustomerEventSender sender;
+    private final boolean enabled;
+    private final BlockingQueue<CustomerChangeEvent> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private final List<Consumer<CustomerChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public CustomerEventOutbox(@Lazy CustomerEventSender sender,
+                               @Value("${customers.events.enabled:false}") boolean enabled,
+                               @Value("${customers.events.queue-capacity:10000}") int queueCapacity,
+                               @Value("${customers.events.batch-size:100}") int batchSize,
+                               @Value("${customers.events.linger-ms:50}") long lingerMillis,
+                               @Value("${customers.events.max-attempts:0}") int maxAttempts,
+                               @Value("${customers.events.retry-backoff-ms:1000}") long retryBackoffMillis,
+                               @Value("${customers.events.max-backoff-ms:30000}") long maxBackoffMillis) {
+        this.sender = sender;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void addListener(Consumer<CustomerChangeEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(CustomerChangeEvent event) {
+        for (Consumer<CustomerChangeEvent> listener : listeners)
+            listener.accept(event);
+        if (!enabled)
+            return;
+        if (!queue.offer(event) && dropped.getAndIncrement() % 1000 == 0)
+            LOG.warn("Customer event outbox is full, dropping events ({} so far)", dropped.get());
+    }
+
+    private void drain() {
+        List<CustomerChangeEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CustomerChangeEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                //Give a batch that is not full yet a moment to fill up, unless we are shutting down
+                if (running && lingerMillis > 0 && queue.size() < batchSize - 1)
+                    Thread.sleep(lingerMillis);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<CustomerChangeEvent> batch) throws InterruptedException {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sender.send(batch);
+                published.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return;
+            } catch (Exception e) {
+                //Logged on the first failures and then once per retry at the longest backoff
+                if (attempt <= 3 || backoff >= maxBackoffMillis)
+                    LOG.warn("Publishing {} customer events failed (attempt {}): {}", batch.size(), attempt, e.toString());
+                if (maxAttempts > 0 && attempt >= maxAttempts)
+                    break;
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, maxBackoffMillis);
+            }
+        }
+        failed.addAndGet(batch.size());
+        LOG.error("Dropping {} customer events after {} attempts", batch.size(), maxAttempts);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running)
+            return;
+        running = true;
+        worker = new Thread(this::drain, "customer-events");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running)
+            return;
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            //Still retrying a batch the broker does not confirm, which is given up with the queue
+            worker.interrupt();
+            LOG.warn("A batch and {} more customer events were not published before shutdown", queue.size());
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "published", published.get()));
+        metrics.add(new Metric<>(PREFIX + "batches", batches.get()));
+        metrics.add(new Metric<>(PREFIX + "dropped", dropped.get()));
+        metrics.add(new Metric<>(PREFIX + "failed", failed.get()));
+        metrics.add(new Metric<>(PREFIX + "queued", queue.size()));
+        return metrics;
+    }
+}
@@ -0,0 +1,11 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import java.util.List;
+
+/**
+ * Delivers a batch of events to the broker. Implementations only return once the broker has
+ * confirmed the whole batch and throw if it did not.
+ */
+public interface CustomerEventSender {
+    void send(List<CustomerChangeEvent> events) throws Exception;
+}
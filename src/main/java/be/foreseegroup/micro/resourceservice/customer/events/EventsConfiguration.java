@@ -0,0 +1,32 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Customer change events are published to a durable topic exchange with routing keys
+ * {@code customer.created}, {@code customer.updated} and {@code customer.deleted}, so consumers
+ * bind their own queues to the changes they care about. The exchange is declared by the
+ * RabbitAdmin the first time a connection is opened, which only happens when events are enabled.
+ */
+@Configuration
+public class EventsConfiguration {
+
+    @Value("${customers.events.exchange:customer.events}")
+    String exchange;
+
+    @Bean
+    public TopicExchange customerEventsExchange() {
+        return new TopicExchange(exchange, true, false);
+    }
+
+    @Bean
+    public CustomerEventSender customerEventSender(RabbitTemplate rabbitTemplate, ObjectMapper mapper,
+                                                   @Value("${customers.events.confirm-timeout-ms:5000}") long confirmTimeoutMillis) {
+        return new RabbitCustomerEventSender(rabbitTemplate, mapper, exchange, confirmTimeoutMillis);
+    }
+}
@@ -0,0 +1,46 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Publishes a batch on one channel in confirm mode and waits for a single round of
+ * publisher confirms covering the whole batch.
+ */
+public class RabbitCustomerEventSender implements CustomerEventSender {
+    private static final int PERSISTENT = 2;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper mapper;
+    private final String exchange;
+    private final long confirmTimeoutMillis;
+
+    public RabbitCustomerEventSender(RabbitTemplate rabbitTemplate, ObjectMapper mapper, String exchange, long confirmTimeoutMillis) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.mapper = mapper;
+        this.exchange = exchange;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+    }
+
+    @Override
+    public void send(List<CustomerChangeEvent> events) {
+        rabbitTemplate.execute(channel -> {
+            channel.confirmSelect();
+            for (CustomerChangeEvent event : events) {
+                AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                        .contentType("application/json")
+                        .deliveryMode(PERSISTENT)
+                        .type(event.getType().name())
+                        .timestamp(new Date(event.getTimestamp()))
+                        .build();
+                channel.basicPublish(exchange, event.getType().routingKey(), properties, mapper.writeValueAsBytes(event));
+            }
+            channel.waitForConfirmsOrDie(confirmTimeoutMillis);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package be.foreseegroup.micro.resourceservice.customer.format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+/**
+ * Reads and writes request and response bodies with a Jackson mapper for a binary format,
+ * the way {@link org.springframework.http.converter.json.MappingJackson2HttpMessageConverter} does for JSON.
+ */
+public class BinaryJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public BinaryJacksonHttpMessageConverter(ObjectMapper objectMapper, MediaType mediaType) {
+        super(objectMapper, mediaType);
+    }
+}
@@ -0,0 +1,90 @@
+package be.foreseegroup.micro.resourceservice.customer.format;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The encodings customers can be exchanged in. JSON is the default; JVM clients can ask for
+ * the binary Smile or CBOR encodings of the same data model, which are smaller and cheaper to
+ * produce and parse. The binary mappers are configured like the JSON one.
+ */
+@Component
+public class CustomerFormats {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+    public static final MediaType CBOR = MediaType.valueOf(CBOR_VALUE);
+
+    private final ObjectMapper json;
+    private final ObjectMapper smile;
+    private final ObjectMapper cbor;
+
+    @Autowired
+    public CustomerFormats(ObjectMapper json) {
+        this.json = json;
+        this.smile = binaryMapper(new SmileFactory());
+        this.cbor = binaryMapper(new CBORFactory());
+    }
+
+    private static ObjectMapper binaryMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        Jackson2ObjectMapperBuilder.json().configure(mapper);
+        return mapper;
+    }
+
+    /**
+     * @return {@link #SMILE} or {@link #CBOR} if the content type is one of them, otherwise {@code null}
+     */
+    public MediaType binary(MediaType contentType) {
+        if (contentType == null)
+            return null;
+        if (SMILE.isCompatibleWith(contentType) && !contentType.isWildcardSubtype())
+            return SMILE;
+        if (CBOR.isCompatibleWith(contentType) && !contentType.isWildcardSubtype())
+            return CBOR;
+        return null;
+    }
+
+    /**
+     * Picks the encoding for a response that is written by hand rather than by a message converter.
+     * A binary encoding is only chosen when the client names it explicitly and prefers it over JSON,
+     * so wildcards keep getting JSON.
+     *
+     * @return {@link #SMILE} or {@link #CBOR}, or {@code null} for JSON
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null)
+            return null;
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0)
+                continue;
+            MediaType binary = binary(mediaType);
+            if (binary != null)
+                return binary;
+            if (!mediaType.isWildcardType() && !mediaType.isWildcardSubtype())
+                return null;
+        }
+        return null;
+    }
+
+    /**
+     * @return the mapper for {@link #SMILE} or {@link #CBOR}, or the JSON mapper for anything else
+     */
+    public ObjectMapper mapper(MediaType binary) {
+        if (SMILE.equals(binary))
+            return smile;
+        if (CBOR.equals(binary))
+            return cbor;
+        return json;
+    }
+}
@@ -0,0 +1,25 @@
+package be.foreseegroup.micro.resourceservice.customer.format;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+/**
+ * Registers the Smile and CBOR converters after the default ones, so a request that accepts
+ * anything still gets JSON and the binary formats are only used when they are asked for.
+ */
+@Configuration
+public class FormatConfiguration extends WebMvcConfigurerAdapter {
+
+    @Autowired
+    CustomerFormats formats;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new BinaryJacksonHttpMessageConverter(formats.mapper(CustomerFormats.SMILE), CustomerFormats.SMILE));
+        converters.add(new BinaryJacksonHttpMessageConverter(formats.mapper(CustomerFormats.CBOR), CustomerFormats.CBOR));
+    }
+}
@@ -0,0 +1,36 @@
+package be.foreseegroup.micro.resourceservice.customer.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency of every handled request under {@code endpoint.<handler method>},
+ * from the moment the handler is selected until the response has been written.
+ */
+public class EndpointTimingInterceptor extends HandlerInterceptorAdapter {
+    private static final String START_ATTRIBUTE = EndpointTimingInterceptor.class.getName() + ".start";
+
+    private final LatencyMetrics metrics;
+
+    public EndpointTimingInterceptor(LatencyMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        //Async requests are dispatched more than once, keep the time of the first dispatch
+        if (request.getAttribute(START_ATTRIBUTE) == null)
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        if (start != null && handler instanceof HandlerMethod)
+            metrics.record("endpoint." + ((HandlerMethod) handler).getMethod().getName(), System.nanoTime() - start);
+    }
+}
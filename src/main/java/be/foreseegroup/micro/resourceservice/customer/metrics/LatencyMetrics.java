@@ -0,0 +1,151 @@
+package be.foreseegroup.micro.resourceservice.customer.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency histograms per endpoint and per repository operation, published on the actuator
+ * {@code /metrics} endpoint as {@code histogram.customers.<name>.*}.
+ * <p>
+ * Recording goes into an HdrHistogram {@link Recorder}, which is wait-free for writers, so request
+ * threads never contend on a lock. A background thread closes an interval every
+ * {@code customers.metrics.interval-seconds}; percentiles and throughput describe the last complete
+ * interval, so every reader of {@code /metrics} sees the same numbers however often it reads.
+ * {@code count} is the total since startup.
+ */
+@Component
+public class LatencyMetrics implements SmartLifecycle, PublicMetrics {
+    private static final String PREFIX = "histogram.customers.";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+
+    private volatile boolean running;
+    private Thread roller;
+
+    @Autowired
+    public LatencyMetrics(@Value("${customers.metrics.interval-seconds:60}") long intervalSeconds) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+    }
+
+    public void record(String name, long nanos) {
+        Timer timer = timers.get(name);
+        if (timer == null)
+            timer = timers.computeIfAbsent(name, key -> new Timer());
+        timer.recorder.recordValue(nanos);
+        timer.count.increment();
+    }
+
+    private void rollEveryInterval() {
+        long next = System.nanoTime() + intervalNanos;
+        while (running) {
+            long remaining = next - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+                continue;
+            }
+            roll();
+            next += intervalNanos;
+        }
+    }
+
+    /**
+     * Closes the current interval of every histogram.
+     */
+    void roll() {
+        timers.values().forEach(Timer::roll);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        roller = new Thread(this::rollEveryInterval, "customer-latency-metrics");
+        roller.setDaemon(true);
+        roller.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running)
+            return;
+        running = false;
+        LockSupport.unpark(roller);
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (ConcurrentMap.Entry<String, Timer> entry : timers.entrySet())
+            entry.getValue().report(PREFIX + entry.getKey() + ".", metrics);
+        return metrics;
+    }
+
+    private static final class Timer {
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder count = new LongAdder();
+        //The last complete interval, empty until the first one closes
+        private Histogram last = recorder.getIntervalHistogram();
+        private double lastSeconds;
+        private long intervalStart = System.nanoTime();
+
+        synchronized void roll() {
+            long now = System.nanoTime();
+            //The interval before the last one is no longer served, so its histogram is reused
+            last = recorder.getIntervalHistogram(last);
+            lastSeconds = (now - intervalStart) / 1e9;
+            intervalStart = now;
+        }
+
+        synchronized void report(String prefix, List<Metric<?>> metrics) {
+            metrics.add(new Metric<>(prefix + "count", count.sum()));
+            metrics.add(new Metric<>(prefix + "rate", lastSeconds > 0 ? last.getTotalCount() / lastSeconds : 0.0));
+            metrics.add(new Metric<>(prefix + "p50", millis(last.getValueAtPercentile(50))));
+            metrics.add(new Metric<>(prefix + "p99", millis(last.getValueAtPercentile(99))));
+            metrics.add(new Metric<>(prefix + "p999", millis(last.getValueAtPercentile(99.9))));
+            metrics.add(new Metric<>(prefix + "max", millis(last.getMaxValue())));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / NANOS_PER_MILLI;
+        }
+    }
+}
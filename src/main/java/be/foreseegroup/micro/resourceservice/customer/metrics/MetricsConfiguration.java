@@ -0,0 +1,24 @@
+package be.foreseegroup.micro.resourceservice.customer.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class MetricsConfiguration extends WebMvcConfigurerAdapter {
+
+    @Autowired
+    LatencyMetrics latencyMetrics;
+
+    @Bean
+    public static RepositoryTimingPostProcessor repositoryTimingPostProcessor(LatencyMetrics latencyMetrics) {
+        return new RepositoryTimingPostProcessor(latencyMetrics);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EndpointTimingInterceptor(latencyMetrics)).addPathPatterns("/customers/**");
+    }
+}
@@ -0,0 +1,39 @@
+package be.foreseegroup.micro.resourceservice.customer.metrics;
+
+import be.foreseegroup.micro.resourceservice.customer.service.CustomerRepository;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Adds a timing interceptor in front of the Spring Data proxy of {@link CustomerRepository},
+ * recording every call under {@code repository.<method>}.
+ */
+public class RepositoryTimingPostProcessor implements BeanPostProcessor {
+    private final LatencyMetrics metrics;
+
+    public RepositoryTimingPostProcessor(LatencyMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CustomerRepository && bean instanceof Advised) {
+            MethodInterceptor timer = invocation -> {
+                long start = System.nanoTime();
+                try {
+                    return invocation.proceed();
+                } finally {
+                    metrics.record("repository." + invocation.getMethod().getName(), System.nanoTime() - start);
+                }
+            };
+            ((Advised) bean).addAdvice(0, timer);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,76 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The outcome of one {@link BulkOperation}. {@code status} uses the same HTTP status codes
+ * as the single-customer endpoints.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+    private int index;
+    private BulkOperation.Type op;
+    private String id;
+    private int status;
+    private String error;
+
+    public BulkItemResult() {
+    }
+
+    public BulkItemResult(int index, BulkOperation.Type op, String id, int status, String error) {
+        this.index = index;
+        this.op = op;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    /**
+     * Result for an operation that was skipped because an earlier operation of an ordered request failed.
+     */
+    public static BulkItemResult notExecuted(int index, BulkOperation operation) {
+        return new BulkItemResult(index, operation.getOp(), operation.getId(), HttpStatus.FAILED_DEPENDENCY.value(),
+                "not executed, an earlier operation failed");
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public BulkOperation.Type getOp() {
+        return op;
+    }
+
+    public void setOp(BulkOperation.Type op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
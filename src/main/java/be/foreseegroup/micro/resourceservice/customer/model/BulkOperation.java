@@ -0,0 +1,60 @@
+package be.foreseegroup.micro.resourceservice.customer.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * One entry of a bulk request: a create, update or delete of a single customer.
+ */
+public class BulkOperation {
+    public enum Type {
+        CREATE, UPDATE, DELETE;
+
+        @JsonCreator
+        public static Type fromValue(String value) {
+            return valueOf(value.toUpperCase());
+        }
+
+        @JsonValue
+        public String toValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    private Type op;
+    private String id;
+    private Customer customer;
+
+    public BulkOperation() {
+    }
+
+    public BulkOperation(Type op, String id, Customer customer) {
+        this.op = op;
+        this.id = id;
+        this.customer = customer;
+    }
+
+    public Type getOp() {
+        return op;
+    }
+
+    public void setOp(Type op) {
+        this.op = op;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+}
@@ -1,28 +1,61 @@
 package be.foreseegroup.micro.resourceservice.customer.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.Locale;
 
 /**
  * Created by Kaj on 24/09/15.
  */
+//Search filters on a key prefix and pages by (key, id), so each key is indexed together with the id
+@Document
+@CompoundIndexes({
+        @CompoundIndex(name = "nameKey_id", def = "{'nameKey': 1, '_id': 1}"),
+        @CompoundIndex(name = "addressKey_id", def = "{'addressKey': 1, '_id': 1}"),
+        @CompoundIndex(name = "modified_id", def = "{'modified': 1, '_id': 1}")
+})
 public class Customer {
     @Id
     private String id;
     private String name;
     private String address;
+    @Version
+    private Long version;
+
+    //Lower-cased copies of name and address, indexed for case-insensitive prefix search
+    @JsonIgnore
+    private String nameKey;
+    @JsonIgnore
+    private String addressKey;
+    //Stamped on every write through CustomerRepositoryCustom, the collection revision is derived from it
+    @JsonIgnore
+    private Date modified;
 
     public Customer() {
     }
 
     public Customer(String name, String address) {
-        this.name = name;
-        this.address = address;
+        setName(name);
+        setAddress(address);
     }
 
     public Customer(String id, String name, String address) {
         this.id = id;
-        this.name = name;
-        this.address = address;
+        setName(name);
+        setAddress(address);
+    }
+
+    /**
+     * Normalizes a name or address (prefix) the way it is stored in the search keys.
+     */
+    public static String searchKey(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
     }
 
     public String getId() {
@@ -39,6 +72,7 @@ public class Customer {
 
     public void setName(String name) {
         this.name = name;
+        this.nameKey = searchKey(name);
     }
 
     public String getAddress() {
@@ -47,5 +81,34 @@ public class Customer {
 
     public void setAddress(String address) {
         this.address = address;
+        this.addressKey = searchKey(address);
+    }
+
+    @JsonIgnore
+    public String getNameKey() {
+        return nameKey;
+    }
+
+    @JsonIgnore
+    public String getAddressKey() {
+        return addressKey;
+    }
+
+    @JsonIgnore
+    public Date getModified() {
+        return modified;
+    }
+
+    @JsonIgnore
+    public void setModified(Date modified) {
+        this.modified = modified;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
     }
 }
@@ -0,0 +1,55 @@
+package be.foreseegroup.micro.resourceservice.customer.mongo;
+
+import com.mongodb.MongoClientOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connection pool and socket settings of the Mongo client, picked up by Spring Boot when it creates
+ * the client. The defaults are those of the driver. A thread that needs a connection while all
+ * {@code connections-per-host} are in use waits at most {@code max-wait-ms}, and at most
+ * {@code connections-per-host * threads-allowed-to-block-multiplier} threads wait at a time;
+ * beyond that requests fail right away instead of queueing.
+ */
+@Configuration
+public class MongoConfiguration {
+    static final String DESCRIPTION = "customers";
+
+    @Value("${customers.mongo.connections-per-host:100}")
+    int connectionsPerHost;
+
+    @Value("${customers.mongo.threads-allowed-to-block-multiplier:5}")
+    int threadsAllowedToBlockMultiplier;
+
+    @Value("${customers.mongo.max-wait-ms:120000}")
+    int maxWaitMillis;
+
+    @Value("${customers.mongo.connect-timeout-ms:10000}")
+    int connectTimeoutMillis;
+
+    @Value("${customers.mongo.socket-timeout-ms:0}")
+    int socketTimeoutMillis;
+
+    @Value("${customers.mongo.socket-keep-alive:false}")
+    boolean socketKeepAlive;
+
+    @Bean
+    public MongoClientOptions mongoClientOptions() {
+        return options(DESCRIPTION).build();
+    }
+
+    /**
+     * The description names the pool in the driver's JMX beans, see {@link MongoPoolMetrics}.
+     */
+    MongoClientOptions.Builder options(String description) {
+        return MongoClientOptions.builder()
+                .description(description)
+                .connectionsPerHost(connectionsPerHost)
+                .threadsAllowedToBlockForConnectionMultiplier(threadsAllowedToBlockMultiplier)
+                .maxWaitTime(maxWaitMillis)
+                .connectTimeout(connectTimeoutMillis)
+                .socketTimeout(socketTimeoutMillis)
+                .socketKeepAlive(socketKeepAlive);
+    }
+}
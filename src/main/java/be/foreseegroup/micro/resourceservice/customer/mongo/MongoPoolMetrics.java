@@ -0,0 +1,70 @@
+package be.foreseegroup.micro.resourceservice.customer.mongo;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Publishes the connection pool statistics that the Mongo driver keeps in JMX, summed over the
+ * servers of each client: {@code mongo.pool.customers.*} for the client of the repository and
+ * {@code mongo.pool.customers.reads.*} for the read client of {@link MongoReadRouting}, if any.
+ * {@code utilization} is the percentage of the pool that is checked out, {@code waitQueue} the
+ * number of threads waiting for a connection.
+ */
+@Component
+public class MongoPoolMetrics implements PublicMetrics {
+    private static final String PREFIX = "mongo.pool.";
+    private static final String[] ATTRIBUTES = {"Size", "CheckedOutCount", "WaitQueueSize", "MaxSize"};
+    private static final ObjectName POOLS = pools();
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private static ObjectName pools() {
+        try {
+            return new ObjectName("org.mongodb.driver:type=ConnectionPool,*");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Map<String, int[]> pools = new TreeMap<>();
+        for (ObjectName name : server.queryNames(POOLS, null)) {
+            String description = name.getKeyProperty("description");
+            int[] totals = new int[ATTRIBUTES.length];
+            try {
+                for (int i = 0; i < ATTRIBUTES.length; i++)
+                    totals[i] = ((Number) server.getAttribute(name, ATTRIBUTES[i])).intValue();
+            } catch (JMException e) {
+                //The pool was closed in the meantime
+                continue;
+            }
+            int[] sum = pools.computeIfAbsent(description == null ? "default" : description, key -> new int[ATTRIBUTES.length]);
+            for (int i = 0; i < ATTRIBUTES.length; i++)
+                sum[i] += totals[i];
+        }
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        pools.forEach((description, totals) -> {
+            String prefix = PREFIX + description + ".";
+            metrics.add(new Metric<>(prefix + "size", totals[0]));
+            metrics.add(new Metric<>(prefix + "checkedOut", totals[1]));
+            metrics.add(new Metric<>(prefix + "waitQueue", totals[2]));
+            metrics.add(new Metric<>(prefix + "maxSize", totals[3]));
+            metrics.add(new Metric<>(prefix + "utilization", totals[3] == 0 ? 0.0 : 100.0 * totals[1] / totals[3]));
+        });
+        return metrics;
+    }
+}
@@ -0,0 +1,101 @@
+package be.foreseegroup.micro.resourceservice.customer.mongo;
+
+import com.mongodb.DB;
+import com.mongodb.Mongo;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * Decides where customer reads go. With {@code customers.mongo.read-preference} left at
+ * {@code primary} reads use the same template as writes. Any other read preference, e.g.
+ * {@code secondaryPreferred}, gives reads a client of their own with that read preference, so
+ * they are spread over the replica set while writes, and the reads that must see them, such as
+ * the loads of the customer cache, stay on the primary. It is a separate client because the read
+ * preference of a template is set on the collections it shares with every other template on the
+ * same client.
+ * <p>
+ * Secondaries can lag the primary by the replication delay; the driver has no way to bound it.
+ */
+@Component
+public class MongoReadRouting implements DisposableBean {
+    static final String DESCRIPTION = MongoConfiguration.DESCRIPTION + ".reads";
+    private static final Logger LOG = LoggerFactory.getLogger(MongoReadRouting.class);
+
+    private final MongoTemplate reads;
+    private final MongoClient client;
+
+    @Autowired
+    public MongoReadRouting(MongoTemplate template, Mongo mongo, MongoProperties properties, MongoConfiguration configuration,
+                            @Value("${customers.mongo.read-preference:primary}") String readPreference) throws UnknownHostException {
+        ReadPreference preference = ReadPreference.valueOf(readPreference);
+        if (preference.equals(ReadPreference.primary())) {
+            reads = template;
+            client = null;
+        } else if (!(mongo instanceof MongoClient)) {
+            LOG.warn("Reads stay on the primary, the Mongo client is not a MongoClient");
+            reads = template;
+            client = null;
+        } else {
+            client = client(properties, (MongoClient) mongo, configuration.options(DESCRIPTION).readPreference(preference));
+            reads = new MongoTemplate(new SimpleMongoDbFactory(client, template.getDb().getName()), template.getConverter());
+        }
+    }
+
+    /**
+     * Connects to the same servers as the primary client, from the same Spring Boot properties.
+     * A single host is used as a seed to discover the other members of its replica set.
+     */
+    private static MongoClient client(MongoProperties properties, MongoClient mongo, MongoClientOptions.Builder options)
+            throws UnknownHostException {
+        if (properties.getHost() == null && properties.getPort() == null)
+            return new MongoClient(new MongoClientURI(properties.getUri(), options));
+        ServerAddress seed = new ServerAddress(properties.getHost() == null ? ServerAddress.defaultHost() : properties.getHost(),
+                properties.getPort() == null ? ServerAddress.defaultPort() : properties.getPort());
+        return new MongoClient(Collections.singletonList(seed), mongo.getCredentialsList(), options.build());
+    }
+
+    /**
+     * The template for reads that may be answered by a secondary.
+     */
+    public MongoTemplate reads() {
+        return reads;
+    }
+
+    /**
+     * Runs the reads on a single connection. With a secondary read preference the driver then
+     * sends them all to the same member, so a later read never sees an older state than an earlier one.
+     */
+    public <T> T together(Supplier<T> reads) {
+        if (client == null)
+            return reads.get();
+        DB db = this.reads.getDb();
+        db.requestStart();
+        try {
+            return reads.get();
+        } finally {
+            db.requestDone();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (client != null)
+            client.close();
+    }
+}
@@ -0,0 +1,151 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Merges concurrent lookups by id into a single {@code $in} query.
+ * <p>
+ * The first lookup that finds no open batch opens one and becomes its leader. When no query is running,
+ * it runs the query right away, so a lookup on an idle loader never waits. Otherwise it waits
+ * {@code customers.lookup.window-micros} for other lookups to join, then runs the query for every id
+ * in the batch. A batch that reaches {@code customers.lookup.max-batch} ids is run right away by the
+ * lookup that filled it. Lookups of an id that is already in the open batch share its result, so
+ * each id is queried at most once per batch. A window of 0 turns batching off.
+ */
+@Component
+public class CustomerBatchLoader implements PublicMetrics {
+    private static final String PREFIX = "lookup.customers.";
+
+    private final CustomerRepository repo;
+    private final long windowNanos;
+    private final int maxBatch;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private Batch open;
+
+    private static final class Batch {
+        final Map<String, CompletableFuture<Customer>> futures = new LinkedHashMap<>();
+    }
+
+    @Autowired
+    public CustomerBatchLoader(CustomerRepository repo,
+                               @Value("${customers.lookup.window-micros:1000}") long windowMicros,
+                               @Value("${customers.lookup.max-batch:100}") int maxBatch) {
+        this.repo = repo;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * @return the customer with the given id, or {@code null} if it does not exist
+     */
+    public Customer load(String id) {
+        lookups.incrementAndGet();
+        if (windowNanos <= 0) {
+            queries.incrementAndGet();
+            return repo.findOne(id);
+        }
+
+        Batch batch;
+        CompletableFuture<Customer> future;
+        boolean leader;
+        boolean full;
+        synchronized (this) {
+            if (open == null)
+                open = new Batch();
+            batch = open;
+            leader = batch.futures.isEmpty();
+            future = batch.futures.computeIfAbsent(id, key -> new CompletableFuture<>());
+            full = batch.futures.size() >= maxBatch;
+            if (full)
+                open = null;
+        }
+
+        if (full) {
+            run(batch);
+        } else if (leader) {
+            //Lookups only pile up behind queries that are running, so there is nothing to wait for otherwise
+            if (running.get() > 0)
+                LockSupport.parkNanos(windowNanos);
+            if (close(batch))
+                run(batch);
+        }
+        return future.join();
+    }
+
+    /**
+     * Looks up all ids in one query, without waiting for other lookups.
+     *
+     * @return an entry for every id, empty if the customer does not exist
+     */
+    public Map<String, Optional<Customer>> loadAll(Iterable<? extends String> ids) {
+        Set<String> distinct = new LinkedHashSet<>();
+        ids.forEach(distinct::add);
+        lookups.addAndGet(distinct.size());
+        Map<String, Customer> found = find(distinct);
+        Map<String, Optional<Customer>> result = new LinkedHashMap<>();
+        for (String id : distinct)
+            result.put(id, Optional.ofNullable(found.get(id)));
+        return result;
+    }
+
+    private synchronized boolean close(Batch batch) {
+        if (open != batch)
+            return false;
+        open = null;
+        return true;
+    }
+
+    private void run(Batch batch) {
+        try {
+            Map<String, Customer> found = find(batch.futures.keySet());
+            batch.futures.forEach((id, future) -> future.complete(found.get(id)));
+        } catch (RuntimeException e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private Map<String, Customer> find(Collection<String> ids) {
+        queries.incrementAndGet();
+        running.incrementAndGet();
+        try {
+            Map<String, Customer> found = new HashMap<>(ids.size() * 2);
+            for (Customer customer : repo.findAll(ids))
+                found.put(customer.getId(), customer);
+            return found;
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "lookups", lookups.get()));
+        metrics.add(new Metric<>(PREFIX + "queries", queries.get()));
+        return metrics;
+    }
+}
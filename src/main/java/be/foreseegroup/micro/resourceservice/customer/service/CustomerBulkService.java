@@ -0,0 +1,155 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.accesslog.AccessLog;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerChangeEvent;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerEventOutbox;
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bulk variant of the create, update and delete endpoints of {@link CustomerService}.
+ * <p>
+ * The request body is either a JSON array, an NDJSON stream, or a Smile or CBOR sequence of
+ * {@link BulkOperation}s. Operations are read incrementally and written to Mongo in chunks of
+ * {@code customers.bulk.chunk-size}, one bulk write per chunk. The response contains one
+ * {@link BulkItemResult} per operation, in request order and in the same format as the request.
+ * When the request fails halfway, for instance on a malformed operation or a Mongo failure, the response
+ * still ends with a complete array or sequence; its last result carries the index from which operations
+ * may not have been executed.
+ */
+@RestController
+@RequestMapping("/customers/_bulk")
+public class CustomerBulkService {
+    private static final Logger LOG = LoggerFactory.getLogger(CustomerBulkService.class);
+
+    @Autowired
+    CustomerRepository repo;
+
+    @Autowired
+    CustomerCache cache;
+
+    @Autowired
+    CustomerEventOutbox events;
+
+    @Autowired
+    CustomerFormats formats;
+
+    @Value("${customers.bulk.chunk-size:1000}")
+    int chunkSize;
+
+    @RequestMapping(method = RequestMethod.POST, consumes = {MediaType.APPLICATION_JSON_VALUE, CustomerService.NDJSON,
+            CustomerFormats.SMILE_VALUE, CustomerFormats.CBOR_VALUE})
+    public void bulk(@RequestParam(defaultValue = "true") boolean ordered,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType contentType = MediaType.valueOf(request.getContentType());
+        boolean ndjson = contentType.isCompatibleWith(MediaType.valueOf(CustomerService.NDJSON));
+        MediaType binary = formats.binary(contentType);
+        //Only a JSON array is answered with an array, every other format with a sequence of results
+        boolean array = !ndjson && binary == null;
+        ObjectMapper mapper = formats.mapper(binary);
+        //Reads an array element by element, or a sequence of root values
+        Iterator<BulkOperation> operations = mapper.reader(BulkOperation.class).readValues(request.getInputStream());
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(binary != null ? binary.toString() : ndjson ? CustomerService.NDJSON : MediaType.APPLICATION_JSON_VALUE);
+        JsonGenerator generator = mapper.getFactory().createGenerator(response.getOutputStream());
+        if (array)
+            generator.writeStartArray();
+
+        List<BulkOperation> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        boolean stopped = false;
+        try {
+            while (operations.hasNext()) {
+                chunk.add(operations.next());
+                if (chunk.size() == chunkSize || !operations.hasNext()) {
+                    List<BulkItemResult> results = stopped ? skip(chunk, index) : write(chunk, index, ordered);
+                    for (BulkItemResult result : results) {
+                        write(generator, result, ndjson);
+                        stopped |= ordered && result.getStatus() >= HttpStatus.BAD_REQUEST.value();
+                    }
+                    generator.flush();
+                    index += chunk.size();
+                    request.setAttribute(AccessLog.RESULT_SIZE, index);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //The status line was sent with the first chunk, so the failure is reported as the last result
+            LOG.error("Bulk request failed after {} operations", index, e);
+            //The operation iterator wraps parse failures in a RuntimeException
+            boolean malformed = e instanceof JsonProcessingException || e.getCause() instanceof JsonProcessingException;
+            HttpStatus status = malformed ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+            write(generator, new BulkItemResult(index, null, null, status.value(),
+                    "request failed, operations from this index on may not have been executed: " + e.getMessage()), ndjson);
+        } finally {
+            if (array)
+                generator.writeEndArray();
+            generator.close();
+        }
+    }
+
+    private static void write(JsonGenerator generator, BulkItemResult result, boolean ndjson) throws IOException {
+        generator.writeObject(result);
+        if (ndjson)
+            generator.writeRaw('\n');
+    }
+
+    private List<BulkItemResult> write(List<BulkOperation> chunk, int firstIndex, boolean ordered) {
+        List<BulkItemResult> results = repo.bulkWrite(chunk, firstIndex, ordered);
+        for (BulkItemResult result : results) {
+            if (result.getStatus() < HttpStatus.BAD_REQUEST.value()) {
+                BulkOperation operation = chunk.get(result.getIndex() - firstIndex);
+                if (operation.getOp() == BulkOperation.Type.DELETE)
+                    cache.delete(result.getId());
+                else
+                    cache.invalidate(result.getId());
+                events.publish(changeEvent(result, operation));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Bulk writes do not read the documents back, so updated customers are published without a version.
+     */
+    private static CustomerChangeEvent changeEvent(BulkItemResult result, BulkOperation operation) {
+        if (operation.getOp() == BulkOperation.Type.DELETE)
+            return CustomerChangeEvent.deleted(result.getId());
+        Customer customer = operation.getCustomer();
+        customer.setId(result.getId());
+        if (operation.getOp() == BulkOperation.Type.CREATE) {
+            customer.setVersion(0L);
+            return CustomerChangeEvent.created(customer);
+        }
+        customer.setVersion(null);
+        return CustomerChangeEvent.updated(customer);
+    }
+
+    private static List<BulkItemResult> skip(List<BulkOperation> chunk, int firstIndex) {
+        List<BulkItemResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(BulkItemResult.notExecuted(firstIndex + i, chunk.get(i)));
+        }
+        return results;
+    }
+}
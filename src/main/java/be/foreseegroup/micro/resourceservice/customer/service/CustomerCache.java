@@ -0,0 +1,189 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read-through cache in front of {@link CustomerBatchLoader}.
+ * Missing customers are cached as well, so repeated 404s do not reach Mongo.
+ * Concurrent misses on the same id wait for a single load.
+ * Writes made through this instance refresh or invalidate the entry; the TTL bounds
+ * how long changes made by other instances can go unnoticed.
+ * <p>
+ * Writes can reach the cache in another order than they reached Mongo, so a cached customer is only
+ * replaced by a higher version. A load that was still running when a write to the same id reached the
+ * cache may have read the document before the write; it is run again instead of being cached.
+ */
+@Component
+public class CustomerCache implements PublicMetrics {
+    private static final String PREFIX = "cache.customers.";
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CustomerRepository repo;
+    private final LoadingCache<String, Optional<Customer>> cache;
+    //Counts the writes per stripe of ids, so a load can tell whether a write happened while it ran
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Autowired
+    public CustomerCache(CustomerRepository repo,
+                         CustomerBatchLoader loader,
+                         @Value("${customers.cache.max-size:10000}") long maxSize,
+                         @Value("${customers.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.repo = repo;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build(new CacheLoader<String, Optional<Customer>>() {
+                    @Override
+                    public Optional<Customer> load(String id) {
+                        long generation;
+                        Customer customer;
+                        do {
+                            generation = generations.get(stripe(id));
+                            customer = loader.load(id);
+                        } while (generation != generations.get(stripe(id)));
+                        return Optional.ofNullable(customer);
+                    }
+
+                    @Override
+                    public Map<String, Optional<Customer>> loadAll(Iterable<? extends String> ids) {
+                        Map<String, Long> started = new HashMap<>();
+                        ids.forEach(id -> started.put(id, generations.get(stripe(id))));
+                        Map<String, Optional<Customer>> loaded = loader.loadAll(ids);
+                        started.forEach((id, generation) -> {
+                            if (generation != generations.get(stripe(id)))
+                                loaded.put(id, load(id));
+                        });
+                        return loaded;
+                    }
+                });
+    }
+
+    /**
+     * @return the customer with the given id, or {@code null} if it does not exist
+     */
+    public Customer get(String id) {
+        return cache.getUnchecked(id).orElse(null);
+    }
+
+    /**
+     * Looks up several customers at once. Every id that is not cached is read in a single query.
+     *
+     * @return the customers that exist, in the order of the ids, without duplicates
+     */
+    public List<Customer> getAll(List<String> ids) {
+        Map<String, Optional<Customer>> found;
+        try {
+            found = cache.getAll(ids);
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
+        }
+        List<Customer> customers = new ArrayList<>(found.size());
+        for (Optional<Customer> customer : found.values())
+            customer.ifPresent(customers::add);
+        return customers;
+    }
+
+    /**
+     * The customer from the cache when it is cached, otherwise only the given fields are read,
+     * and nothing is cached. The other properties of a customer that is read may be {@code null}.
+     *
+     * @return the customer, or {@code null} if it does not exist
+     */
+    public Customer get(String id, Set<String> fields) {
+        Optional<Customer> cached = cache.getIfPresent(id);
+        if (cached != null)
+            return cached.orElse(null);
+        return repo.findOne(id, fields);
+    }
+
+    /**
+     * The version of a customer, taken from the cache when the customer is cached and otherwise
+     * read on its own, without loading or caching the document.
+     *
+     * @return the version, or {@code null} if the customer does not exist
+     */
+    public Long version(String id) {
+        Optional<Customer> cached = cache.getIfPresent(id);
+        if (cached != null)
+            return cached.map(Customer::getVersion).orElse(null);
+        return repo.findVersion(id);
+    }
+
+    private static int stripe(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * Caches a customer that was just written, unless a higher version is cached already.
+     * Over a cached 404 nothing is cached: it may come from a delete that happened after this write.
+     */
+    public void put(Customer customer) {
+        generations.incrementAndGet(stripe(customer.getId()));
+        //Replacing an entry that is still loading also makes the cache drop what the load returns
+        cache.asMap().compute(customer.getId(), (id, cached) -> {
+            if (cached == null)
+                return Optional.of(customer);
+            if (!cached.isPresent())
+                return null;
+            return isNewer(customer, cached.get()) ? Optional.of(customer) : cached;
+        });
+    }
+
+    private static boolean isNewer(Customer customer, Customer cached) {
+        return cached.getVersion() == null || (customer.getVersion() != null && customer.getVersion() > cached.getVersion());
+    }
+
+    /**
+     * Caches the customer as missing after it was deleted.
+     */
+    public void delete(String id) {
+        generations.incrementAndGet(stripe(id));
+        cache.put(id, Optional.empty());
+    }
+
+    /**
+     * Drops the entry after a write whose resulting version is not known.
+     */
+    public void invalidate(String id) {
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "size", cache.size()));
+        metrics.add(new Metric<>(PREFIX + "hits", stats.hitCount()));
+        metrics.add(new Metric<>(PREFIX + "misses", stats.missCount()));
+        metrics.add(new Metric<>(PREFIX + "evictions", stats.evictionCount()));
+        metrics.add(new Metric<>(PREFIX + "hitRatio", stats.hitRate()));
+        return metrics;
+    }
+}
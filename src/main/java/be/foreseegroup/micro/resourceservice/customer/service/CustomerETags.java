@@ -0,0 +1,101 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.springframework.http.MediaType;
+
+/**
+ * Maps the version of a {@link Customer}, and the revision of the whole collection, to and from a strong ETag.
+ * The Smile and CBOR encodings of the same data are different representations, so their ETags carry a suffix.
+ */
+final class CustomerETags {
+    static final String ANY = "*";
+    private static final String SMILE_SUFFIX = "-smile";
+    private static final String CBOR_SUFFIX = "-cbor";
+
+    private CustomerETags() {
+    }
+
+    /**
+     * @return the ETag of the customer, or {@code null} if it has no version yet
+     */
+    static String of(Customer customer) {
+        return of(customer.getVersion());
+    }
+
+    /**
+     * @return the ETag of a customer at this version, or {@code null} if there is no version
+     */
+    static String of(Long version) {
+        return of(version, null);
+    }
+
+    /**
+     * @return the ETag of a customer at this version in the given binary encoding, or in JSON for {@code null},
+     * or {@code null} if there is no version
+     */
+    static String of(Long version, MediaType binary) {
+        return version == null ? null : tag(version.toString(), binary);
+    }
+
+    /**
+     * @return the ETag of a list of customers read at this collection revision
+     */
+    static String ofRevision(String revision) {
+        return ofRevision(revision, null);
+    }
+
+    /**
+     * @return the ETag of a list of customers read at this collection revision, in the given binary encoding,
+     * or in JSON for {@code null}
+     */
+    static String ofRevision(String revision, MediaType binary) {
+        return tag("c" + revision, binary);
+    }
+
+    private static String tag(String value, MediaType binary) {
+        return "\"" + value + suffix(binary) + "\"";
+    }
+
+    private static String suffix(MediaType binary) {
+        if (CustomerFormats.SMILE.equals(binary))
+            return SMILE_SUFFIX;
+        if (CustomerFormats.CBOR.equals(binary))
+            return CBOR_SUFFIX;
+        return "";
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header value, which may list several ETags, against the current ETag.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (ANY.equals(tag) || tag.equals(eTag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses the version out of an {@code If-Match} header value, in any encoding.
+     *
+     * @return the version, or {@code null} for {@code *}
+     * @throws NumberFormatException if the value is not an ETag issued by this service
+     */
+    static Long parse(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (ANY.equals(tag))
+            return null;
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\""))
+            throw new NumberFormatException(tag);
+        String value = tag.substring(1, tag.length() - 1);
+        if (value.endsWith(SMILE_SUFFIX))
+            value = value.substring(0, value.length() - SMILE_SUFFIX.length());
+        else if (value.endsWith(CBOR_SUFFIX))
+            value = value.substring(0, value.length() - CBOR_SUFFIX.length());
+        return Long.valueOf(value);
+    }
+}
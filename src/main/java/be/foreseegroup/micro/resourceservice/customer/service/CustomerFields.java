@@ -0,0 +1,77 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse fieldsets: parses the {@code fields} request parameter and reduces customers to the
+ * requested properties. The id is always included, because it identifies the customer and is
+ * the pagination cursor.
+ */
+final class CustomerFields {
+    static final String ID = "id";
+    static final List<String> NAMES = Arrays.asList(ID, "name", "address", "version");
+
+    private CustomerFields() {
+    }
+
+    /**
+     * @return the requested fields in request order, or {@code null} if all fields are requested
+     * @throws IllegalArgumentException if a field does not exist
+     */
+    static Set<String> parse(String fields) {
+        if (fields == null)
+            return null;
+        Set<String> parsed = new LinkedHashSet<>();
+        parsed.add(ID);
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (!NAMES.contains(field))
+                throw new IllegalArgumentException("Unknown field: " + field);
+            parsed.add(field);
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the customer itself if all fields are requested, otherwise a map of the requested fields
+     */
+    static Object select(Customer customer, Set<String> fields) {
+        if (fields == null || customer == null)
+            return customer;
+        Map<String, Object> selected = new LinkedHashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            switch (field) {
+                case ID:
+                    selected.put(field, customer.getId());
+                    break;
+                case "name":
+                    selected.put(field, customer.getName());
+                    break;
+                case "address":
+                    selected.put(field, customer.getAddress());
+                    break;
+                case "version":
+                    selected.put(field, customer.getVersion());
+                    break;
+            }
+        }
+        return selected;
+    }
+
+    static List<?> select(List<Customer> customers, Set<String> fields) {
+        if (fields == null)
+            return customers;
+        List<Object> selected = new ArrayList<>(customers.size());
+        for (Customer customer : customers)
+            selected.add(select(customer, fields));
+        return selected;
+    }
+}
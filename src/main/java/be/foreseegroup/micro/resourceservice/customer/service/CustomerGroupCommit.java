@@ -0,0 +1,156 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes concurrent creates as a single unordered Mongo bulk insert.
+ * Only creates without an id are batched; a create with an id may overwrite an existing customer,
+ * see {@link CustomerRepositoryCustom#upsert}, and is written on its own.
+ * <p>
+ * Batches are formed like in {@link CustomerBatchLoader}: the first create that finds no open batch
+ * waits {@code customers.group-commit.window-micros} for others to join, and a batch that reaches
+ * {@code customers.group-commit.max-batch} customers is written right away. Every caller gets its own
+ * generated id, or its own error, once the whole batch is acknowledged with the same write concern
+ * as a single save. A window of 0, the default, turns group commit off.
+ */
+@Component
+public class CustomerGroupCommit implements PublicMetrics {
+    private static final String PREFIX = "groupcommit.customers.";
+
+    private final CustomerRepository repo;
+    private final long windowNanos;
+    private final int maxBatch;
+
+    private final AtomicLong creates = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    private Batch open;
+
+    private static final class Batch {
+        Thread leader;
+        final List<Customer> customers = new ArrayList<>();
+        final List<CompletableFuture<Customer>> futures = new ArrayList<>();
+    }
+
+    @Autowired
+    public CustomerGroupCommit(CustomerRepository repo,
+                               @Value("${customers.group-commit.window-micros:0}") long windowMicros,
+                               @Value("${customers.group-commit.max-batch:100}") int maxBatch) {
+        this.repo = repo;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Saves the customer.
+     *
+     * @return the customer with its id and version, which is only 0 if it was inserted
+     */
+    public Customer create(Customer customer) {
+        creates.incrementAndGet();
+        if (windowNanos <= 0 || customer.getId() != null) {
+            writes.incrementAndGet();
+            return repo.upsert(customer);
+        }
+
+        Batch batch;
+        CompletableFuture<Customer> future = new CompletableFuture<>();
+        boolean leader;
+        boolean full;
+        synchronized (this) {
+            if (open == null)
+                open = new Batch();
+            batch = open;
+            leader = batch.customers.isEmpty();
+            if (leader)
+                batch.leader = Thread.currentThread();
+            batch.customers.add(customer);
+            batch.futures.add(future);
+            full = batch.customers.size() >= maxBatch;
+            if (full)
+                open = null;
+        }
+
+        if (full) {
+            run(batch);
+        } else if (leader) {
+            //A batch that fills up before the window ends is written by the create that filled it, which wakes the leader
+            long deadline = System.nanoTime() + windowNanos;
+            long remaining;
+            while (!future.isDone() && (remaining = deadline - System.nanoTime()) > 0)
+                LockSupport.parkNanos(remaining);
+            if (close(batch))
+                run(batch);
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private synchronized boolean close(Batch batch) {
+        if (open != batch)
+            return false;
+        open = null;
+        return true;
+    }
+
+    private void run(Batch batch) {
+        List<BulkOperation> operations = new ArrayList<>(batch.customers.size());
+        for (Customer customer : batch.customers)
+            operations.add(new BulkOperation(BulkOperation.Type.CREATE, null, customer));
+        List<BulkItemResult> results;
+        try {
+            writes.incrementAndGet();
+            results = repo.bulkWrite(operations, 0, false);
+        } catch (RuntimeException e) {
+            batch.futures.forEach(future -> future.completeExceptionally(e));
+            LockSupport.unpark(batch.leader);
+            return;
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            BulkItemResult result = results.get(i);
+            CompletableFuture<Customer> future = batch.futures.get(i);
+            if (result.getStatus() == HttpStatus.OK.value()) {
+                Customer customer = batch.customers.get(i);
+                customer.setId(result.getId());
+                customer.setVersion(0L);
+                future.complete(customer);
+            } else if (result.getStatus() == HttpStatus.CONFLICT.value()) {
+                future.completeExceptionally(new DuplicateKeyException(result.getError()));
+            } else {
+                future.completeExceptionally(new UncategorizedMongoDbException(result.getError(), null));
+            }
+        }
+        LockSupport.unpark(batch.leader);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "creates", creates.get()));
+        metrics.add(new Metric<>(PREFIX + "writes", writes.get()));
+        return metrics;
+    }
+}
@@ -0,0 +1,656 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerChangeEvent;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerEventOutbox;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An in-memory copy of the whole customer collection, enabled with {@code customers.read-model.enabled},
+ * that answers list, search and get-by-id reads without going to Mongo.
+ * <p>
+ * The collection is streamed in when the application starts. After that the writes of this instance are
+ * applied as they happen, from the change events of the {@link CustomerEventOutbox}. Every
+ * {@code customers.read-model.poll-ms} the collection revision is read, and when it moved the model catches
+ * up from the {@code modified} stamps: it reads the customers stamped since the latest stamp it saw, less
+ * {@code customers.read-model.overlap-ms} for writes that commit out of order and inserts from clocks that are
+ * behind. Deletes leave no stamp, so when the number of rows then differs from the number of documents, the
+ * ids of the collection are walked next to the rows, which removes the rows that are gone and reads the
+ * customers that were missed. Until the first load is complete, reads go to Mongo.
+ * <p>
+ * Every customer is a small immutable row, keyed by the id as Mongo stores it, so an ObjectId takes 12 bytes
+ * instead of a 24 character string and the rows are in the order of Mongo. Searches walk two sorted indexes
+ * over the rows, on the name and on the address, compared like the lower-cased search keys of Mongo, which
+ * are not kept. The rows of a load share equal names and addresses.
+ */
+@Component
+public class CustomerReadModel implements SmartLifecycle, PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(CustomerReadModel.class);
+    private static final String PREFIX = "readmodel.customers.";
+    //Reconciling reads the missed customers in queries of this many ids
+    private static final int READ_CHUNK = 1000;
+
+    /**
+     * Mongo orders every string before every ObjectId, see {@link CustomerRepositoryImpl#toId}.
+     */
+    private static final Comparator<Object> ID_ORDER = (a, b) -> {
+        if (a instanceof ObjectId)
+            return b instanceof ObjectId ? ((ObjectId) a).compareTo((ObjectId) b) : 1;
+        return b instanceof ObjectId ? -1 : ((String) a).compareTo((String) b);
+    };
+
+    private static final Comparator<Entry> BY_NAME = indexOrder(row -> row.name);
+    private static final Comparator<Entry> BY_ADDRESS = indexOrder(row -> row.address);
+
+    private final CustomerRepository repo;
+    private final boolean enabled;
+    private final long pollMillis;
+    private final long overlapMillis;
+    //Tells the revisions of unverified models of different instances apart
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private volatile Snapshot snapshot;
+    private volatile Verified verified = new Verified("", -1);
+    private volatile long verifiedAt;
+    //The latest modified stamp read from the collection, only used by the refreshing thread
+    private long watermark;
+    //Writes of this instance that happened during a load or a catch-up, to apply to a new copy and to protect from older reads
+    private List<CustomerChangeEvent> pending;
+
+    //Every change to the rows, so the revision of the model moves with them
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong catchUps = new AtomicLong();
+    private final AtomicLong reconciles = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public CustomerReadModel(CustomerRepository repo, CustomerEventOutbox events,
+                             @Value("${customers.read-model.enabled:false}") boolean enabled,
+                             @Value("${customers.read-model.poll-ms:1000}") long pollMillis,
+                             @Value("${customers.read-model.overlap-ms:5000}") long overlapMillis) {
+        this.repo = repo;
+        this.enabled = enabled;
+        this.pollMillis = pollMillis;
+        this.overlapMillis = overlapMillis;
+        if (enabled)
+            events.addListener(this::apply);
+    }
+
+    /**
+     * The rows of a load, with an index on the name and one on the address. Only the thread that builds a
+     * snapshot, or one holding the lock of the model once it is published, changes it.
+     */
+    private static final class Snapshot {
+        final NavigableMap<Object, Row> rows = new ConcurrentSkipListMap<>(ID_ORDER);
+        final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+        final NavigableSet<Entry> byAddress = new ConcurrentSkipListSet<>(BY_ADDRESS);
+
+        /**
+         * The old entries are removed before the new ones are added, an equal entry would not be replaced.
+         * A search that runs meanwhile may miss the row.
+         */
+        void put(Object id, Row row) {
+            unindex(id, rows.put(id, row));
+            if (row.name != null)
+                byName.add(new Entry(id, row));
+            if (row.address != null)
+                byAddress.add(new Entry(id, row));
+        }
+
+        void remove(Object id) {
+            unindex(id, rows.remove(id));
+        }
+
+        private void unindex(Object id, Row old) {
+            if (old == null)
+                return;
+            if (old.name != null)
+                byName.remove(new Entry(id, old));
+            if (old.address != null)
+                byAddress.remove(new Entry(id, old));
+        }
+    }
+
+    private static final class Row {
+        final String name;
+        final String address;
+        final Long version;
+
+        Row(String name, String address, Long version) {
+            this.name = name;
+            this.address = address;
+            this.version = version;
+        }
+
+        Customer toCustomer(Object id) {
+            Customer customer = new Customer(id.toString(), name, address);
+            customer.setVersion(version);
+            return customer;
+        }
+    }
+
+    /**
+     * An entry of a search index. An entry without an id is a bound that sorts before every id with the same key.
+     */
+    private static final class Entry {
+        final Object id;
+        final Row row;
+
+        Entry(Object id, Row row) {
+            this.id = id;
+            this.row = row;
+        }
+    }
+
+    /**
+     * The collection revision the model was last known to be equal to, and the number of changes it had then.
+     */
+    private static final class Verified {
+        final String revision;
+        final long changes;
+
+        Verified(String revision, long changes) {
+            this.revision = revision;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Orders by the field as Mongo orders the lower-cased search keys, then by id, without lower-casing the field.
+     */
+    private static Comparator<Entry> indexOrder(Function<Row, String> field) {
+        return (a, b) -> {
+            String x = field.apply(a.row);
+            String y = field.apply(b.row);
+            for (int i = 0; i < Math.min(x.length(), y.length()); i++) {
+                int byChar = Character.toLowerCase(x.charAt(i)) - Character.toLowerCase(y.charAt(i));
+                if (byChar != 0)
+                    return byChar;
+            }
+            if (x.length() != y.length())
+                return x.length() - y.length();
+            if (a.id == null || b.id == null)
+                return a.id == null ? (b.id == null ? 0 : -1) : 1;
+            return ID_ORDER.compare(a.id, b.id);
+        };
+    }
+
+    /**
+     * Whether reads can be answered from the model: it is enabled and its first load is complete.
+     */
+    public boolean ready() {
+        return snapshot != null;
+    }
+
+    /**
+     * An opaque token that changes whenever the model changes, read before the data like {@link CustomerRepository#revision}.
+     * While the model is known to be equal to the collection at a revision, it is that revision, so every instance
+     * and the reads from Mongo hand out the same token for the same data. After a change that is not verified yet,
+     * it is only valid on this instance.
+     */
+    public String revision() {
+        Verified current = verified;
+        long changed = changes.get();
+        if (changed == current.changes)
+            return current.revision;
+        return current.revision + "." + instance + "." + Long.toHexString(changed);
+    }
+
+    /**
+     * @return the customer, or {@code null} if it does not exist
+     */
+    public Customer get(String id) {
+        Object key = CustomerRepositoryImpl.toId(id);
+        Row row = snapshot.rows.get(key);
+        return row == null ? null : row.toCustomer(key);
+    }
+
+    /**
+     * @return the version, or {@code null} if the customer does not exist
+     */
+    public Long version(String id) {
+        Row row = snapshot.rows.get(CustomerRepositoryImpl.toId(id));
+        return row == null ? null : row.version;
+    }
+
+    /**
+     * The customers that exist, in the order of the ids, like {@link CustomerCache#getAll}.
+     */
+    public List<Customer> getAll(List<String> ids) {
+        NavigableMap<Object, Row> current = snapshot.rows;
+        List<Customer> customers = new ArrayList<>(ids.size());
+        for (String id : new LinkedHashSet<>(ids)) {
+            Object key = CustomerRepositoryImpl.toId(id);
+            Row row = current.get(key);
+            if (row != null)
+                customers.add(row.toCustomer(key));
+        }
+        return customers;
+    }
+
+    /**
+     * Like {@link CustomerRepositoryCustom#findPage}.
+     */
+    public List<Customer> findPage(String after, int limit) {
+        NavigableMap<Object, Row> current = snapshot.rows;
+        List<Customer> customers = new ArrayList<>(Math.min(limit, 1000));
+        for (Map.Entry<Object, Row> entry : (after == null ? current : current.tailMap(CustomerRepositoryImpl.toId(after), false)).entrySet()) {
+            customers.add(entry.getValue().toCustomer(entry.getKey()));
+            if (customers.size() == limit)
+                break;
+        }
+        return customers;
+    }
+
+    /**
+     * Like {@link CustomerRepositoryCustom#search}, in the same order. Like Mongo, it walks the index on the name,
+     * or on the address when no name is given, from the prefix or from ({@code afterKey}, {@code after}),
+     * and filters on the other prefix.
+     */
+    public List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit) {
+        Snapshot current = snapshot;
+        boolean byName = namePrefix != null;
+        String key = Customer.searchKey(byName ? namePrefix : addressPrefix);
+        String addressKey = byName ? Customer.searchKey(addressPrefix) : null;
+        NavigableSet<Entry> index = byName ? current.byName : current.byAddress;
+        Object afterId = after == null ? null : CustomerRepositoryImpl.toId(after);
+        if (afterId != null && afterKey == null) {
+            Row row = current.rows.get(afterId);
+            afterKey = row == null ? null : byName ? row.name : row.address;
+        }
+
+        Entry from = new Entry(null, new Row(key, key, null));
+        NavigableSet<Entry> tail = index.tailSet(from, true);
+        if (afterId != null && afterKey != null) {
+            Entry last = new Entry(afterId, new Row(afterKey, afterKey, null));
+            if (index.comparator().compare(last, from) > 0)
+                tail = index.tailSet(last, false);
+        }
+        List<Customer> customers = new ArrayList<>(Math.min(limit, 1000));
+        for (Entry entry : tail) {
+            if (!startsWith(byName ? entry.row.name : entry.row.address, key))
+                break;
+            if (startsWith(entry.row.address, addressKey)) {
+                customers.add(entry.row.toCustomer(entry.id));
+                if (customers.size() == limit)
+                    break;
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Compares with the lower-cased value, as Mongo does with the search keys, without lower-casing all of it.
+     */
+    static boolean startsWith(String value, String key) {
+        if (key == null)
+            return true;
+        if (value == null || value.length() < key.length())
+            return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.toLowerCase(value.charAt(i)) != key.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private synchronized void apply(CustomerChangeEvent event) {
+        if (pending != null)
+            pending.add(event);
+        Snapshot current = snapshot;
+        if (current != null) {
+            apply(current, event);
+            changes.incrementAndGet();
+            applied.incrementAndGet();
+        }
+    }
+
+    /**
+     * Concurrent writes to the same customer may publish their events out of order, so a row is only
+     * replaced by a newer version, and an update of a customer that is gone does not bring it back.
+     */
+    private static void apply(Snapshot snapshot, CustomerChangeEvent event) {
+        Object id = CustomerRepositoryImpl.toId(event.getCustomerId());
+        Customer customer = event.getCustomer();
+        Row row = snapshot.rows.get(id);
+        Long version = event.getVersion();
+        switch (event.getType()) {
+            case DELETED:
+                snapshot.remove(id);
+                break;
+            case UPDATED:
+                if (row == null)
+                    break;
+                if (version == null) {
+                    //A bulk update incremented the version it did not read
+                    snapshot.put(id, new Row(customer.getName(), customer.getAddress(),
+                            row.version == null ? null : row.version + 1));
+                    break;
+                }
+                //Falls through
+            case CREATED:
+                if (row == null || row.version == null || version == null || version > row.version)
+                    snapshot.put(id, new Row(customer.getName(), customer.getAddress(), version));
+                break;
+        }
+    }
+
+    /**
+     * Streams the whole collection into a new copy and replaces the current one with it.
+     * The revision is read first, so the copy is never older than the revision it is checked against.
+     */
+    void load() {
+        long started = System.currentTimeMillis();
+        String revision = repo.revision();
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        Snapshot loaded = new Snapshot();
+        Map<String, String> strings = new HashMap<>();
+        long[] latest = {0};
+        try {
+            repo.streamAll(customer -> {
+                put(loaded, customer, strings);
+                latest[0] = Math.max(latest[0], stamp(customer));
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+
+        //Whether the stream already saw an update without a version is not known, so it is read again
+        Set<String> reread = new LinkedHashSet<>();
+        int seen;
+        synchronized (this) {
+            for (CustomerChangeEvent event : pending) {
+                apply(loaded, event);
+                if (event.getType() == CustomerChangeEvent.Type.UPDATED && event.getVersion() == null)
+                    reread.add(event.getCustomerId());
+            }
+            seen = pending.size();
+        }
+        List<Customer> found = new ArrayList<>(reread.size());
+        try {
+            if (!reread.isEmpty())
+                repo.findAll(reread).forEach(found::add);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            throw e;
+        }
+
+        //Rows written while they were read again keep what the events say, the read may have been older
+        boolean quiet;
+        synchronized (this) {
+            List<CustomerChangeEvent> meanwhile = pending.subList(seen, pending.size());
+            meanwhile.forEach(event -> apply(loaded, event));
+            Set<Object> written = written(meanwhile);
+            for (String id : reread) {
+                if (!written.contains(CustomerRepositoryImpl.toId(id)))
+                    loaded.remove(CustomerRepositoryImpl.toId(id));
+            }
+            for (Customer customer : found) {
+                if (!written.contains(CustomerRepositoryImpl.toId(customer.getId())))
+                    put(loaded, customer, strings);
+            }
+            quiet = pending.isEmpty();
+            pending = null;
+            snapshot = loaded;
+            changes.incrementAndGet();
+        }
+        watermark = latest[0];
+        verifiedAt = started;
+        verify(revision, quiet);
+        loads.incrementAndGet();
+    }
+
+    /**
+     * Reads what changed in the collection since the revision the model was verified at, when the revision moved.
+     * Customers read from Mongo replace the rows, unless this instance wrote them while they were read: the read
+     * may have been older than the write, and the rows are left to the next catch-up.
+     */
+    void catchUp() {
+        long started = System.currentTimeMillis();
+        Verified last = verified;
+        long changed = changes.get();
+        String revision = repo.revision();
+        if (revision.equals(last.revision) && changed == last.changes) {
+            verifiedAt = started;
+            return;
+        }
+
+        Snapshot current = snapshot;
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        boolean quiet;
+        try {
+            List<Customer> modified = new ArrayList<>();
+            repo.streamModifiedSince(new Date(watermark - overlapMillis), modified::add);
+            long latest = watermark;
+            synchronized (this) {
+                Set<Object> written = written(pending);
+                for (Customer customer : modified) {
+                    latest = Math.max(latest, stamp(customer));
+                    if (!written.contains(CustomerRepositoryImpl.toId(customer.getId())))
+                        put(current, customer, null);
+                }
+                changes.incrementAndGet();
+            }
+            watermark = latest;
+            if (current.rows.size() != repo.count())
+                reconcile(current);
+        } finally {
+            synchronized (this) {
+                quiet = pending.isEmpty();
+                pending = null;
+            }
+        }
+        verifiedAt = started;
+        verify(revision, quiet);
+        catchUps.incrementAndGet();
+    }
+
+    /**
+     * Walks the ids of the collection next to the rows, both in the order of Mongo. Rows whose id is not in the
+     * collection are removed, and customers that have no row are read. Rows that this instance wrote meanwhile are
+     * left alone, their ids may have been walked before the write.
+     */
+    private void reconcile(Snapshot current) {
+        List<Object> gone = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        PeekingIterator<Object> rows = Iterators.peekingIterator(current.rows.keySet().iterator());
+        repo.streamIds(id -> {
+            Object key = CustomerRepositoryImpl.toId(id);
+            while (rows.hasNext() && ID_ORDER.compare(rows.peek(), key) < 0)
+                gone.add(rows.next());
+            if (rows.hasNext() && ID_ORDER.compare(rows.peek(), key) == 0)
+                rows.next();
+            else
+                missing.add(id);
+        });
+        rows.forEachRemaining(gone::add);
+        List<Customer> found = new ArrayList<>(missing.size());
+        for (List<String> chunk : Iterables.partition(missing, READ_CHUNK))
+            repo.findAll(chunk).forEach(found::add);
+
+        synchronized (this) {
+            Set<Object> written = written(pending);
+            for (Object id : gone) {
+                if (!written.contains(id))
+                    current.remove(id);
+            }
+            for (Customer customer : found) {
+                if (!written.contains(CustomerRepositoryImpl.toId(customer.getId())))
+                    put(current, customer, null);
+            }
+            changes.incrementAndGet();
+        }
+        reconciles.incrementAndGet();
+        LOG.info("Reconciled the customer read model: removed {} and read {} customers", gone.size(), found.size());
+    }
+
+    private static Set<Object> written(List<CustomerChangeEvent> events) {
+        Set<Object> ids = new HashSet<>();
+        events.forEach(event -> ids.add(CustomerRepositoryImpl.toId(event.getCustomerId())));
+        return ids;
+    }
+
+    /**
+     * Marks the model as equal to the collection at the revision read before the load or catch-up started, when
+     * this instance wrote nothing meanwhile and the revision still did not move after it. The changes are read
+     * before the revision: a write of this instance after that read moves the revision.
+     */
+    private void verify(String revision, boolean quiet) {
+        if (!quiet)
+            return;
+        long changed = changes.get();
+        if (repo.revision().equals(revision))
+            verified = new Verified(revision, changed);
+    }
+
+    private static long stamp(Customer customer) {
+        return customer.getModified() == null ? 0 : customer.getModified().getTime();
+    }
+
+    private static void put(Snapshot snapshot, Customer customer, Map<String, String> strings) {
+        snapshot.put(CustomerRepositoryImpl.toId(customer.getId()),
+                new Row(dedupe(strings, customer.getName()), dedupe(strings, customer.getAddress()), customer.getVersion()));
+    }
+
+    private static String dedupe(Map<String, String> strings, String value) {
+        if (value == null || strings == null)
+            return value;
+        String shared = strings.putIfAbsent(value, value);
+        return shared == null ? value : shared;
+    }
+
+    private void refresh() {
+        while (running) {
+            try {
+                if (snapshot == null) {
+                    long started = System.nanoTime();
+                    load();
+                    LOG.info("Loaded {} customers into the read model in {} ms", snapshot.rows.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                } else {
+                    catchUp();
+                }
+            } catch (RuntimeException e) {
+                //Keeps answering from the copy it has, its staleness grows until a load or catch-up succeeds
+                failures.incrementAndGet();
+                if (running)
+                    LOG.warn("Refreshing the customer read model failed: {}", e.toString());
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running)
+            return;
+        running = true;
+        worker = new Thread(this::refresh, "customer-read-model");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread stopped;
+        synchronized (this) {
+            if (!running)
+                return;
+            running = false;
+            stopped = worker;
+        }
+        //Not holding the lock, a load or catch-up that is finishing needs it
+        stopped.interrupt();
+        try {
+            stopped.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * {@code staleness-ms} is how long ago the model was last known to be current, -1 before the first load.
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Snapshot current = snapshot;
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "size", current == null ? 0 : current.rows.size()));
+        metrics.add(new Metric<>(PREFIX + "staleness-ms", current == null ? -1 : System.currentTimeMillis() - verifiedAt));
+        metrics.add(new Metric<>(PREFIX + "loads", loads.get()));
+        metrics.add(new Metric<>(PREFIX + "catch-ups", catchUps.get()));
+        metrics.add(new Metric<>(PREFIX + "reconciles", reconciles.get()));
+        metrics.add(new Metric<>(PREFIX + "applied", applied.get()));
+        metrics.add(new Metric<>(PREFIX + "failures", failures.get()));
+        return metrics;
+    }
+}
@@ -0,0 +1,144 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Repository operations that are implemented directly on top of the MongoTemplate
+ * instead of being derived by Spring Data.
+ */
+public interface CustomerRepositoryCustom {
+
+    /**
+     * Keyset pagination: returns at most {@code limit} customers whose id is strictly
+     * greater than {@code after}, ordered by id. Pass {@code null} to start at the beginning.
+     */
+    List<Customer> findPage(String after, int limit);
+
+    /**
+     * {@link #findPage} with a projection: only the given fields, the id and the version are read
+     * from Mongo, the other properties of the returned customers are left {@code null}.
+     * {@code null} reads all fields.
+     */
+    List<Customer> findPage(String after, int limit, Set<String> fields);
+
+    /**
+     * Like {@link CustomerRepository#findOne}, but only reads the given fields.
+     */
+    Customer findOne(String id, Set<String> fields);
+
+    /**
+     * Replaces {@link CustomerRepository#findAll(Iterable)}. Lookups by id fill the cache, which keeps what it
+     * loaded until the next write through this service, so they always read from the primary: a lagging
+     * secondary would otherwise get its old version, or a 404 for a new customer, cached.
+     */
+    Iterable<Customer> findAll(Iterable<String> ids);
+
+    /**
+     * Runs a group of reads, like a revision and the page read after it, so that the later reads
+     * never see an older state than the earlier ones, also when reads go to secondaries.
+     */
+    <T> T readTogether(Supplier<T> reads);
+
+    /**
+     * Walks the Mongo cursor over the whole collection, ordered by id, and hands every
+     * customer to the consumer as soon as it is read. Nothing is buffered.
+     */
+    void streamAll(Consumer<Customer> consumer);
+
+    /**
+     * Like {@link #streamAll}, for the customers whose {@code modified} stamp is at or after the given time,
+     * with their stamp. Read from the primary, through the index on (modified, id).
+     */
+    void streamModifiedSince(Date since, Consumer<Customer> consumer);
+
+    /**
+     * Hands every id to the consumer, ordered by id, read from the primary and from the id index only.
+     */
+    void streamIds(Consumer<String> consumer);
+
+    /**
+     * Case-insensitive prefix search on name and/or address. A {@code null} prefix does not filter.
+     * Results are ordered by the search key of the name, or of the address when no name prefix is
+     * given, and then by id, so every page is a range scan of the index on (search key, id).
+     * A page starts after the customer with id {@code after}, whose search key is {@code afterKey};
+     * when {@code afterKey} is {@code null} it is read from that customer, and when that customer
+     * no longer exists the search starts from the beginning.
+     */
+    List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit);
+
+    /**
+     * {@link #search} with a projection, like {@link #findPage(String, int, Set)}.
+     * The search key that the results are ordered by is always read as well.
+     */
+    List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit, Set<String> fields);
+
+    /**
+     * Fills in the search keys of documents written before they existed.
+     *
+     * @return the number of documents that were updated
+     */
+    int backfillSearchKeys();
+
+    /**
+     * Reads only the version of a customer, without loading the rest of the document. It decides conditional
+     * requests, so it reads from the primary like {@link #findAll(Iterable)}.
+     *
+     * @return the version, or {@code null} if the customer does not exist
+     */
+    Long findVersion(String id);
+
+    /**
+     * An opaque token that changes whenever the collection changes. Every write of this repository sets
+     * the {@code modified} stamp of the documents it writes in the same operation, so the token is derived
+     * from the data itself: the latest stamp, the number of documents, and the ids and versions of the
+     * documents with that latest stamp. Reading it takes a count and a short walk over the end of the index
+     * on (modified, id).
+     * <p>
+     * Inserts and updates alike take the stamp from the clock of the database. A write can go unnoticed until
+     * the next one when it becomes visible with a stamp older than the latest one, which takes two writes
+     * committing out of order within the same few milliseconds, or the database clock going back. Writes made outside this repository, which do not set the stamp, only change the token when they
+     * change the number of documents.
+     */
+    String revision();
+
+    /**
+     * Atomically overwrites the name and address of a customer, increments its version and stamps it,
+     * in a single findAndModify. When {@code expectedVersion} is not {@code null} the update
+     * only applies if the stored version still matches.
+     *
+     * @return the updated customer, or {@code null} if nothing matched
+     */
+    Customer updateFields(String id, Customer fields, Long expectedVersion);
+
+    /**
+     * Saves a customer like a save without versioning does: a customer whose id already exists is
+     * overwritten with {@link #updateFields}, any other customer is inserted at version 0.
+     *
+     * @return the saved customer with its id and version
+     */
+    Customer upsert(Customer customer);
+
+    /**
+     * Removes a customer with a single remove. When {@code expectedVersion} is not {@code null}
+     * the customer is only removed if the stored version still matches.
+     *
+     * @return whether a customer was removed
+     */
+    boolean remove(String id, Long expectedVersion);
+
+    /**
+     * Executes one chunk of a bulk request as a single Mongo bulk write and returns a result
+     * for every operation, in the same order. {@code firstIndex} is the position of the first
+     * operation in the whole request and is only used to number the results.
+     * In ordered mode nothing after the first failed operation is executed.
+     */
+    List<BulkItemResult> bulkWrite(List<BulkOperation> operations, int firstIndex, boolean ordered);
+}
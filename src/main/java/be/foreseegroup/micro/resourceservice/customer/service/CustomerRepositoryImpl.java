@@ -0,0 +1,429 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import be.foreseegroup.micro.resourceservice.customer.mongo.MongoReadRouting;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Picked up by Spring Data as the implementation of {@link CustomerRepositoryCustom}.
+ * Reads that may be answered by a secondary go through the template of {@link MongoReadRouting},
+ * writes and the reads that have to see them through the primary template. Lookups by id and
+ * version fill the cache or answer conditional requests, so they read from the primary as well.
+ */
+public class CustomerRepositoryImpl implements CustomerRepositoryCustom {
+    private static final Sort BY_ID = new Sort(Sort.Direction.ASC, "id");
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int OBJECT_ID_TYPE = 7;
+    private static final DBObject LATEST_FIRST = new BasicDBObject("modified", -1).append("_id", -1);
+    //How many documents with the latest stamp are hashed into the revision
+    private static final int LATEST_DOCUMENTS = 16;
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Autowired
+    private MongoReadRouting routing;
+
+    @Override
+    public List<Customer> findPage(String after, int limit) {
+        return findPage(after, limit, null);
+    }
+
+    @Override
+    public List<Customer> findPage(String after, int limit, Set<String> fields) {
+        Query query = after == null ? new Query() : new Query(idAfter(after));
+        query.with(BY_ID).limit(limit);
+        return routing.reads().find(project(query, fields), Customer.class);
+    }
+
+    @Override
+    public Customer findOne(String id, Set<String> fields) {
+        return routing.reads().findOne(project(new Query(where("id").is(id)), fields), Customer.class);
+    }
+
+    @Override
+    public Iterable<Customer> findAll(Iterable<String> ids) {
+        List<Object> values = new ArrayList<>();
+        ids.forEach(values::add);
+        return template.find(new Query(where("id").in(values)), Customer.class);
+    }
+
+    @Override
+    public <T> T readTogether(Supplier<T> reads) {
+        return routing.together(reads);
+    }
+
+    /**
+     * The version is always read as well, because responses carry it as their ETag.
+     */
+    private static Query project(Query query, Set<String> fields) {
+        if (fields != null) {
+            query.fields().include("id").include("version");
+            fields.forEach(query.fields()::include);
+        }
+        return query;
+    }
+
+    @Override
+    public List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit) {
+        return search(namePrefix, addressPrefix, afterKey, after, limit, null);
+    }
+
+    @Override
+    public List<Customer> search(String namePrefix, String addressPrefix, String afterKey, String after, int limit,
+                                 Set<String> fields) {
+        String sortKey = namePrefix != null ? "nameKey" : "addressKey";
+        if (after != null && afterKey == null)
+            afterKey = findSearchKey(after, sortKey);
+
+        List<Criteria> criteria = new ArrayList<>();
+        if (namePrefix != null)
+            criteria.add(where("nameKey").regex(prefixRegex(namePrefix)));
+        if (addressPrefix != null)
+            criteria.add(where("addressKey").regex(prefixRegex(addressPrefix)));
+        if (after != null && afterKey != null) {
+            //(key, id) > (afterKey, after); the lower bound on the key narrows the index range as well
+            criteria.add(where(sortKey).gte(afterKey));
+            criteria.add(new Criteria().orOperator(where(sortKey).gt(afterKey), idAfter(after)));
+        }
+        Query query = criteria.isEmpty() ? new Query()
+                : new Query(new Criteria().andOperator(criteria.toArray(new Criteria[criteria.size()])));
+        query.with(new Sort(Sort.Direction.ASC, sortKey).and(BY_ID)).limit(limit);
+        project(query, fields);
+        if (fields != null)
+            query.fields().include(sortKey);
+        return routing.reads().find(query, Customer.class);
+    }
+
+    private String findSearchKey(String id, String key) {
+        Query query = new Query(where("id").is(id));
+        query.fields().include(key);
+        Customer customer = routing.reads().findOne(query, Customer.class);
+        if (customer == null)
+            return null;
+        return key.equals("nameKey") ? customer.getNameKey() : customer.getAddressKey();
+    }
+
+    /**
+     * An anchored, case-sensitive regex on the lower-cased key, which Mongo answers with an
+     * index range scan. Metacharacters are escaped one by one, because a quoted \Q...\E block
+     * is not recognised as a plain prefix and would fall back to scanning the whole index.
+     */
+    static String prefixRegex(String prefix) {
+        String key = Customer.searchKey(prefix);
+        StringBuilder regex = new StringBuilder(key.length() + 8).append('^');
+        for (char c : key.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0)
+                regex.append('\\');
+            regex.append(c);
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public int backfillSearchKeys() {
+        Query missing = new Query(where("nameKey").exists(false));
+        missing.fields().include("name").include("address");
+        String collectionName = template.getCollectionName(Customer.class);
+        int[] updated = new int[1];
+        template.executeQuery(missing, collectionName, dbObject -> {
+            template.updateFirst(new Query(where("id").is(dbObject.get("_id"))), new Update()
+                    .set("nameKey", Customer.searchKey((String) dbObject.get("name")))
+                    .set("addressKey", Customer.searchKey((String) dbObject.get("address"))), Customer.class);
+            updated[0]++;
+        });
+        return updated[0];
+    }
+
+    /**
+     * Generated ids are stored as ObjectIds, which Mongo orders after every string,
+     * so range queries have to compare against the ObjectId form.
+     */
+    static Object toId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    /**
+     * Matches the ids that follow {@code after} in the order of the index on _id. A range only matches
+     * ids of its own BSON type, and every object id sorts after every string, so after a string id
+     * the object ids are matched as well.
+     */
+    private static Criteria idAfter(String after) {
+        Object id = toId(after);
+        if (id instanceof ObjectId)
+            return where("id").gt(id);
+        return new Criteria().orOperator(where("id").gt(id), where("id").type(OBJECT_ID_TYPE));
+    }
+
+    @Override
+    public void streamAll(Consumer<Customer> consumer) {
+        Query query = new Query().with(BY_ID);
+        MongoTemplate reads = routing.reads();
+        reads.executeQuery(query, reads.getCollectionName(Customer.class),
+                dbObject -> consumer.accept(reads.getConverter().read(Customer.class, dbObject)));
+    }
+
+    @Override
+    public void streamModifiedSince(Date since, Consumer<Customer> consumer) {
+        Query query = new Query(where("modified").gte(since));
+        template.executeQuery(query, template.getCollectionName(Customer.class),
+                dbObject -> consumer.accept(template.getConverter().read(Customer.class, dbObject)));
+    }
+
+    @Override
+    public void streamIds(Consumer<String> consumer) {
+        DBCursor ids = template.getCollection(template.getCollectionName(Customer.class))
+                .find(new BasicDBObject(), new BasicDBObject("_id", 1)).sort(new BasicDBObject("_id", 1));
+        try {
+            while (ids.hasNext())
+                consumer.accept(ids.next().get("_id").toString());
+        } finally {
+            ids.close();
+        }
+    }
+
+    @Override
+    public Long findVersion(String id) {
+        Query query = new Query(where("id").is(id));
+        query.fields().include("version");
+        Customer customer = template.findOne(query, Customer.class);
+        return customer == null ? null : customer.getVersion();
+    }
+
+    @Override
+    public String revision() {
+        DBCollection collection = routing.reads().getCollection(template.getCollectionName(Customer.class));
+        long count = collection.count();
+        //Documents without a stamp sort last, so they only count when no document has one
+        DBCursor latest = collection.find(new BasicDBObject(), new BasicDBObject("modified", 1).append("version", 1))
+                .sort(LATEST_FIRST).limit(LATEST_DOCUMENTS);
+        Object latestStamp = null;
+        int hash = 0;
+        try {
+            while (latest.hasNext()) {
+                DBObject document = latest.next();
+                Object stamp = document.get("modified");
+                if (hash == 0)
+                    latestStamp = stamp;
+                else if (!Objects.equals(stamp, latestStamp))
+                    break;
+                hash = 31 * hash + Objects.hash(document.get("_id"), document.get("version"));
+            }
+        } finally {
+            latest.close();
+        }
+        long millis = latestStamp instanceof Date ? ((Date) latestStamp).getTime() : 0;
+        return Long.toHexString(millis) + "-" + Long.toHexString(count) + "-" + Integer.toHexString(hash);
+    }
+
+    @Override
+    public Customer updateFields(String id, Customer fields, Long expectedVersion) {
+        return template.findAndModify(byIdAndVersion(id, expectedVersion), fieldsUpdate(fields),
+                FindAndModifyOptions.options().returnNew(true), Customer.class);
+    }
+
+    /**
+     * Sets every updatable field, null ones included, increments the version and stamps the document, like a PUT.
+     */
+    private static Update fieldsUpdate(Customer fields) {
+        return new Update()
+                .set("name", fields.getName())
+                .set("nameKey", Customer.searchKey(fields.getName()))
+                .set("address", fields.getAddress())
+                .set("addressKey", Customer.searchKey(fields.getAddress()))
+                .inc("version", 1)
+                .currentDate("modified");
+    }
+
+    /**
+     * Sets every field of a new document at version 0 and stamps it. Used as an upsert with a filter that
+     * matches no document, so that it always inserts, fails on a taken id like an insert does, and still
+     * takes the stamp from the clock of the database.
+     */
+    private static Update insertUpdate(Customer customer) {
+        return new Update()
+                .setOnInsert("name", customer.getName())
+                .setOnInsert("nameKey", Customer.searchKey(customer.getName()))
+                .setOnInsert("address", customer.getAddress())
+                .setOnInsert("addressKey", Customer.searchKey(customer.getAddress()))
+                .setOnInsert("version", 0L)
+                .currentDate("modified");
+    }
+
+    @Override
+    public Customer upsert(Customer customer) {
+        while (true) {
+            if (customer.getId() != null) {
+                Customer updated = updateFields(customer.getId(), customer, null);
+                if (updated != null)
+                    return updated;
+            }
+            String id = customer.getId() == null ? new ObjectId().toString() : customer.getId();
+            try {
+                return template.findAndModify(new Query(where("id").is(id).and("version").lt(0)),
+                        insertUpdate(customer), FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        Customer.class);
+            } catch (DuplicateKeyException e) {
+                //Inserted by another request in the meantime, so it is overwritten instead
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(String id, Long expectedVersion) {
+        return template.remove(byIdAndVersion(id, expectedVersion), Customer.class).getN() > 0;
+    }
+
+    private static Query byIdAndVersion(String id, Long expectedVersion) {
+        Criteria criteria = where("id").is(id);
+        if (expectedVersion != null)
+            criteria.and("version").is(expectedVersion);
+        return new Query(criteria);
+    }
+
+    @Override
+    public List<BulkItemResult> bulkWrite(List<BulkOperation> operations, int firstIndex, boolean ordered) {
+        return template.execute(Customer.class, collection -> {
+            BulkItemResult[] results = new BulkItemResult[operations.size()];
+            Set<Object> existing = findExistingIds(collection, operations);
+            BulkWriteOperation bulk = ordered ? collection.initializeOrderedBulkOperation()
+                    : collection.initializeUnorderedBulkOperation();
+            //Maps the index of a request inside the Mongo bulk write back to its position in operations
+            List<Integer> positions = new ArrayList<>();
+            boolean stopped = false;
+
+            for (int i = 0; i < operations.size(); i++) {
+                BulkOperation operation = operations.get(i);
+                if (stopped) {
+                    results[i] = BulkItemResult.notExecuted(firstIndex + i, operation);
+                    continue;
+                }
+                String invalid = validate(operation);
+                if (invalid == null && operation.getOp() != BulkOperation.Type.CREATE
+                        && !existing.contains(toId(operation.getId())))
+                    invalid = "customer does not exist";
+                if (invalid != null) {
+                    results[i] = new BulkItemResult(firstIndex + i, operation.getOp(), operation.getId(),
+                            HttpStatus.BAD_REQUEST.value(), invalid);
+                    stopped = ordered;
+                    continue;
+                }
+
+                switch (operation.getOp()) {
+                    case CREATE: {
+                        Customer customer = operation.getCustomer();
+                        Object id = customer.getId() == null ? new ObjectId() : toId(customer.getId());
+                        bulk.find(new BasicDBObject("_id", id).append("version", new BasicDBObject("$lt", 0)))
+                                .upsert().updateOne(insertUpdate(customer).getUpdateObject());
+                        existing.add(id);
+                        results[i] = new BulkItemResult(firstIndex + i, operation.getOp(), id.toString(),
+                                HttpStatus.OK.value(), null);
+                        break;
+                    }
+                    case UPDATE: {
+                        bulk.find(new BasicDBObject("_id", toId(operation.getId())))
+                                .updateOne(fieldsUpdate(operation.getCustomer()).getUpdateObject());
+                        results[i] = new BulkItemResult(firstIndex + i, operation.getOp(), operation.getId(),
+                                HttpStatus.OK.value(), null);
+                        break;
+                    }
+                    case DELETE: {
+                        Object id = toId(operation.getId());
+                        bulk.find(new BasicDBObject("_id", id)).removeOne();
+                        existing.remove(id);
+                        results[i] = new BulkItemResult(firstIndex + i, operation.getOp(), operation.getId(),
+                                HttpStatus.NO_CONTENT.value(), null);
+                        break;
+                    }
+                }
+                positions.add(i);
+            }
+
+            if (!positions.isEmpty()) {
+                try {
+                    bulk.execute();
+                } catch (BulkWriteException e) {
+                    if (e.getWriteErrors().isEmpty())
+                        throw e;
+                    int firstFailure = Integer.MAX_VALUE;
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        int i = positions.get(error.getIndex());
+                        HttpStatus status = error.getCode() == DUPLICATE_KEY ? HttpStatus.CONFLICT : HttpStatus.INTERNAL_SERVER_ERROR;
+                        results[i].setStatus(status.value());
+                        results[i].setError(error.getMessage());
+                        firstFailure = Math.min(firstFailure, error.getIndex());
+                    }
+                    if (ordered) {
+                        for (int b = firstFailure + 1; b < positions.size(); b++) {
+                            int i = positions.get(b);
+                            results[i] = BulkItemResult.notExecuted(firstIndex + i, operations.get(i));
+                        }
+                    }
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    /**
+     * Looks up, in a single query, which of the ids targeted by updates and deletes exist.
+     */
+    private Set<Object> findExistingIds(DBCollection collection, List<BulkOperation> operations) {
+        List<Object> ids = new ArrayList<>();
+        for (BulkOperation operation : operations) {
+            if (operation.getOp() != null && operation.getOp() != BulkOperation.Type.CREATE && operation.getId() != null)
+                ids.add(toId(operation.getId()));
+        }
+        Set<Object> existing = new HashSet<>();
+        if (ids.isEmpty())
+            return existing;
+        DBCursor cursor = collection.find(new BasicDBObject("_id", new BasicDBObject("$in", ids)), new BasicDBObject("_id", 1));
+        try {
+            while (cursor.hasNext())
+                existing.add(cursor.next().get("_id"));
+        } finally {
+            cursor.close();
+        }
+        return existing;
+    }
+
+    private static String validate(BulkOperation operation) {
+        if (operation.getOp() == null)
+            return "op is required";
+        if (operation.getOp() != BulkOperation.Type.DELETE && operation.getCustomer() == null)
+            return "customer is required";
+        if (operation.getOp() != BulkOperation.Type.CREATE && operation.getId() == null)
+            return "id is required";
+        return null;
+    }
+}
@@ -1,12 +1,30 @@
 package be.foreseegroup.micro.resourceservice.customer.service;
 
+import be.foreseegroup.micro.resourceservice.customer.accesslog.AccessLog;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerChangeEvent;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerEventOutbox;
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
 import be.foreseegroup.micro.resourceservice.customer.model.Customer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Created by Kaj on 24/09/15.
@@ -15,53 +33,343 @@ import org.springframework.web.bind.annotation.*;
 @RestController
 @RequestMapping("/customers")
 public class CustomerService {
-    private static final Logger LOG = LoggerFactory.getLogger(CustomerService.class);
+    static final String NDJSON = "application/x-ndjson";
 
     @Autowired
     CustomerRepository repo;
 
+    @Autowired
+    CustomerCache cache;
+
+    @Autowired
+    CustomerWorkQueue workQueue;
+
+    @Autowired
+    CustomerGroupCommit creates;
+
+    @Autowired
+    CustomerEventOutbox events;
+
+    @Autowired
+    CustomerFormats formats;
+
+    @Autowired
+    CustomerReadModel readModel;
+
+    @Value("${customers.page.default-size:100}")
+    int defaultPageSize;
+
+    @Value("${customers.page.max-size:1000}")
+    int maxPageSize;
+
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<Iterable<Customer>> getAll() {
-        Iterable<Customer> customers = repo.findAll();
-        LOG.info("/customers getAll method called, response size: {}", repo.count());
-        return new ResponseEntity<>(customers, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<Iterable<?>>> getAll(@RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit,
+                                                              @RequestParam(required = false) String fields,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        Set<String> projection;
+        try {
+            projection = CustomerFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        if (pageSize < 1 || pageSize > maxPageSize)
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        //The current request is not visible from the executor thread
+        UriComponentsBuilder nextPage = ServletUriComponentsBuilder.fromCurrentRequest();
+        MediaType binary = formats.negotiate(accept);
+        if (readModel.ready()) {
+            //Nothing blocks, so the page is read on the request thread
+            String eTag = CustomerETags.ofRevision(readModel.revision(), binary);
+            if (ifNoneMatch != null && CustomerETags.matches(ifNoneMatch, eTag))
+                return completed(notModified(eTag));
+            List<Customer> customers = readModel.findPage(after, pageSize);
+            return completed(new ResponseEntity<>(CustomerFields.select(customers, projection), pageHeaders(nextPage, customers, pageSize, eTag), HttpStatus.OK));
+        }
+        return workQueue.submit(() -> repo.readTogether(() -> {
+            //Read before the page, so the page is never older than its ETag
+            String eTag = CustomerETags.ofRevision(repo.revision(), binary);
+            if (ifNoneMatch != null && CustomerETags.matches(ifNoneMatch, eTag))
+                return notModified(eTag);
+            List<Customer> customers = repo.findPage(after, pageSize, projection);
+            return new ResponseEntity<>(CustomerFields.select(customers, projection), pageHeaders(nextPage, customers, pageSize, eTag), HttpStatus.OK);
+        }));
+    }
+
+    /**
+     * Case-insensitive prefix search on name and/or address, ordered by name, or by address when
+     * no name is given. Paginated like {@link #getAll}; the next link also carries the search key
+     * of the last customer as {@code afterKey}.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "search")
+    public DeferredResult<ResponseEntity<Iterable<?>>> search(@RequestParam(required = false) String name,
+                                                              @RequestParam(required = false) String address,
+                                                              @RequestParam(required = false) String afterKey,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit,
+                                                              @RequestParam(required = false) String fields,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        int pageSize = limit == null ? defaultPageSize : limit;
+        Set<String> projection;
+        try {
+            projection = CustomerFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        if (pageSize < 1 || pageSize > maxPageSize || (name == null && address == null))
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        UriComponentsBuilder nextPage = ServletUriComponentsBuilder.fromCurrentRequest();
+        MediaType binary = formats.negotiate(accept);
+        if (readModel.ready()) {
+            String eTag = CustomerETags.ofRevision(readModel.revision(), binary);
+            if (ifNoneMatch != null && CustomerETags.matches(ifNoneMatch, eTag))
+                return completed(notModified(eTag));
+            List<Customer> customers = readModel.search(name, address, afterKey, after, pageSize);
+            return completed(new ResponseEntity<>(CustomerFields.select(customers, projection),
+                    searchPageHeaders(nextPage, name != null, customers, pageSize, eTag), HttpStatus.OK));
+        }
+        return workQueue.submit(() -> repo.readTogether(() -> {
+            String eTag = CustomerETags.ofRevision(repo.revision(), binary);
+            if (ifNoneMatch != null && CustomerETags.matches(ifNoneMatch, eTag))
+                return notModified(eTag);
+            List<Customer> customers = repo.search(name, address, afterKey, after, pageSize, projection);
+            return new ResponseEntity<>(CustomerFields.select(customers, projection),
+                    searchPageHeaders(nextPage, name != null, customers, pageSize, eTag), HttpStatus.OK);
+        }));
+    }
+
+    /**
+     * Multi-get, selected with {@code GET /customers?ids=a,b,c}. Returns the customers that exist,
+     * in the order of the ids. Ids that are not cached are read in a single query.
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "ids")
+    public DeferredResult<ResponseEntity<Iterable<?>>> getByIds(@RequestParam List<String> ids,
+                                                                @RequestParam(required = false) String fields) {
+        Set<String> projection;
+        try {
+            projection = CustomerFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        if (ids.isEmpty() || ids.size() > maxPageSize)
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        if (readModel.ready())
+            return completed(new ResponseEntity<>(CustomerFields.select(readModel.getAll(ids), projection), negotiated(), HttpStatus.OK));
+        return workQueue.submit(() -> {
+            List<Customer> customers = cache.getAll(ids);
+            return new ResponseEntity<>(CustomerFields.select(customers, projection), negotiated(), HttpStatus.OK);
+        });
+    }
+
+    private static HttpHeaders searchPageHeaders(UriComponentsBuilder nextPage, boolean byName, List<Customer> customers,
+                                                 int pageSize, String eTag) {
+        if (customers.size() == pageSize) {
+            Customer last = customers.get(pageSize - 1);
+            String key = byName ? last.getNameKey() : last.getAddressKey();
+            //The other query parameters are still encoded as the client sent them, so only this value is encoded
+            if (key == null)
+                nextPage.replaceQueryParam("afterKey");
+            else
+                nextPage.replaceQueryParam("afterKey", encodeQueryParam(key));
+        }
+        return pageHeaders(nextPage, customers, pageSize, eTag);
+    }
+
+    private static String encodeQueryParam(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Every page carries the ETag of the collection revision it was read at.
+     * A full page also gets a Link header to the page after its last customer.
+     */
+    private static HttpHeaders pageHeaders(UriComponentsBuilder nextPage, List<Customer> customers, int pageSize, String eTag) {
+        HttpHeaders headers = negotiated();
+        headers.setETag(eTag);
+        if (customers.size() == pageSize) {
+            String next = nextPage.replaceQueryParam("after", customers.get(pageSize - 1).getId())
+                    .replaceQueryParam("limit", pageSize)
+                    .build().toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
+    /**
+     * Opt-in streaming variant of {@link #getAll}, selected with {@code GET /customers?stream}.
+     * Every document is written as one JSON line (NDJSON) straight from the Mongo cursor,
+     * so memory use does not depend on the size of the collection.
+     * Clients that accept Smile or CBOR get a sequence of binary values instead.
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "stream")
+    public void streamAll(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType binary = formats.negotiate(accept);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(binary == null ? NDJSON : binary.toString());
+        JsonGenerator generator = formats.mapper(binary).getFactory().createGenerator(response.getOutputStream());
+        int[] written = new int[1];
+        try {
+            repo.streamAll(customer -> {
+                try {
+                    generator.writeObject(customer);
+                    written[0]++;
+                    if (binary == null)
+                        generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            request.setAttribute(AccessLog.RESULT_SIZE, written[0]);
+        }
+        generator.close();
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "{id}")
-    public ResponseEntity<Customer> getById(@PathVariable String id) {
-        LOG.info("/customers getById method called");
-        Customer customer = repo.findOne(id);
-        if (customer == null)
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        return new ResponseEntity<>(customer, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<Object>> getById(@PathVariable String id,
+                                                          @RequestParam(required = false) String fields,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Set<String> projection;
+        try {
+            projection = CustomerFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return completed(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        MediaType binary = formats.negotiate(accept);
+        if (readModel.ready()) {
+            if (ifNoneMatch != null) {
+                String eTag = CustomerETags.of(readModel.version(id), binary);
+                if (eTag != null && CustomerETags.matches(ifNoneMatch, eTag))
+                    return completed(notModified(eTag));
+            }
+            Customer customer = readModel.get(id);
+            if (customer == null)
+                return completed(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+            return completed(new ResponseEntity<>(CustomerFields.select(customer, projection), negotiatedETag(customer, binary), HttpStatus.OK));
+        }
+        return workQueue.submit(() -> {
+            if (ifNoneMatch != null) {
+                //Only the version is needed to answer a revalidation, the document is not loaded
+                String eTag = CustomerETags.of(cache.version(id), binary);
+                if (eTag != null && CustomerETags.matches(ifNoneMatch, eTag))
+                    return notModified(eTag);
+            }
+            Customer customer = projection == null ? cache.get(id) : cache.get(id, projection);
+            if (customer == null)
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            return new ResponseEntity<>(CustomerFields.select(customer, projection), negotiatedETag(customer, binary), HttpStatus.OK);
+        });
     }
 
+    /**
+     * Creates a customer, or overwrites it when a customer with the given id already exists.
+     */
     @RequestMapping(method = RequestMethod.POST)
-    public ResponseEntity<Customer> create(@RequestBody Customer customer) {
-        LOG.info("/customers create method called");
-        Customer createdCustomer = repo.save(customer);
-        return new ResponseEntity<>(createdCustomer, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<Customer>> create(@RequestBody Customer customer) {
+        //The version is assigned by the database, whatever the client sent
+        customer.setVersion(null);
+        return workQueue.submit(() -> {
+            Customer createdCustomer = creates.create(customer);
+            cache.put(createdCustomer);
+            events.publish(createdCustomer.getVersion() == 0 ? CustomerChangeEvent.created(createdCustomer)
+                    : CustomerChangeEvent.updated(createdCustomer));
+            return new ResponseEntity<>(createdCustomer, eTag(createdCustomer), HttpStatus.OK);
+        });
     }
 
     @RequestMapping(method = RequestMethod.PUT, value = "{id}")
-    public ResponseEntity<Customer> update(@PathVariable String id, @RequestBody Customer customer) {
-        LOG.info("/customers update method called");
-        Customer update = repo.findOne(id);
-        if (update == null)
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        update.setName(customer.getName());
-        update.setAddress(customer.getAddress());
-        Customer updatedCustomer = repo.save(update);
-        return new ResponseEntity<>(updatedCustomer, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<Customer>> update(@PathVariable String id, @RequestBody Customer customer,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion;
+        try {
+            expectedVersion = ifMatch == null ? null : CustomerETags.parse(ifMatch);
+        } catch (NumberFormatException e) {
+            return completed(new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED));
+        }
+        return workQueue.submit(() -> {
+            Customer updatedCustomer = repo.updateFields(id, customer, expectedVersion);
+            if (updatedCustomer == null)
+                return new ResponseEntity<>(failedWriteStatus(id, expectedVersion));
+            cache.put(updatedCustomer);
+            events.publish(CustomerChangeEvent.updated(updatedCustomer));
+            return new ResponseEntity<>(updatedCustomer, eTag(updatedCustomer), HttpStatus.OK);
+        });
     }
 
     @RequestMapping(method = RequestMethod.DELETE, value = "{id}")
-    public ResponseEntity<Customer> delete(@PathVariable String id) {
-        LOG.info("/customers delete method called");
-        Customer customer = repo.findOne(id);
-        if (customer == null)
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        repo.delete(customer);
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    public DeferredResult<ResponseEntity<Customer>> delete(@PathVariable String id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion;
+        try {
+            expectedVersion = ifMatch == null ? null : CustomerETags.parse(ifMatch);
+        } catch (NumberFormatException e) {
+            return completed(new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED));
+        }
+        return workQueue.submit(() -> {
+            if (!repo.remove(id, expectedVersion))
+                return new ResponseEntity<>(failedWriteStatus(id, expectedVersion));
+            cache.delete(id);
+            events.publish(CustomerChangeEvent.deleted(id));
+            return new ResponseEntity<Customer>(HttpStatus.NO_CONTENT);
+        });
+    }
+
+    private static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
+    }
+
+    /**
+     * A conditional write that matched nothing either lost the race against another write (412)
+     * or targeted a customer that does not exist (400). Only the conditional case needs the extra lookup.
+     */
+    private HttpStatus failedWriteStatus(String id, Long expectedVersion) {
+        if (expectedVersion != null && repo.exists(id))
+            return HttpStatus.PRECONDITION_FAILED;
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        HttpHeaders headers = negotiated();
+        headers.setETag(eTag);
+        return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+    }
+
+    private static HttpHeaders eTag(Customer customer) {
+        HttpHeaders headers = new HttpHeaders();
+        String eTag = CustomerETags.of(customer);
+        if (eTag != null)
+            headers.setETag(eTag);
+        return headers;
+    }
+
+    /**
+     * The headers of a read whose body is encoded as JSON, Smile or CBOR depending on the Accept header,
+     * so that caches keep the encodings apart.
+     */
+    private static HttpHeaders negotiated() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return headers;
+    }
+
+    private static HttpHeaders negotiatedETag(Customer customer, MediaType binary) {
+        HttpHeaders headers = negotiated();
+        String eTag = CustomerETags.of(customer.getVersion(), binary);
+        if (eTag != null)
+            headers.setETag(eTag);
+        return headers;
     }
 }
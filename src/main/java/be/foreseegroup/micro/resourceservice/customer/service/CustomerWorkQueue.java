@@ -0,0 +1,111 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking part of a request on the bounded customer executor and hands the servlet
+ * thread back to Tomcat in the meantime.
+ * <p>
+ * Work is shed instead of queued without limit: when the executor queue is full the request is
+ * answered with 503 immediately, and work that is still waiting in the queue when the timeout
+ * expires is skipped and answered with 503 as well. Work that has started always runs to completion
+ * and answers with its own result, so a write that commits late is never reported as failed.
+ */
+@Component
+public class CustomerWorkQueue implements PublicMetrics, DisposableBean {
+    private static final Logger LOG = LoggerFactory.getLogger(CustomerWorkQueue.class);
+    private static final String PREFIX = "executor.customers.";
+
+    private final Executor executor;
+    private final long timeoutMillis;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final ScheduledThreadPoolExecutor timeouts;
+
+    @Autowired
+    public CustomerWorkQueue(@Qualifier(ExecutorConfiguration.CUSTOMER_EXECUTOR) Executor executor,
+                             @Value("${customers.executor.timeout-ms:5000}") long timeoutMillis) {
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "customer-work-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    public <T> DeferredResult<ResponseEntity<T>> submit(Supplier<ResponseEntity<T>> work) {
+        //No timeout of its own: only work that has not started yet may be answered with 503
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>();
+        //Claimed by whichever comes first, the work starting or the timeout expiring
+        AtomicBoolean claimed = new AtomicBoolean();
+        ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                timedOut.incrementAndGet();
+                result.setResult(new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            executor.execute(() -> {
+                if (!claimed.compareAndSet(false, true))
+                    return;
+                timeout.cancel(false);
+                try {
+                    result.setResult(work.get());
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            claimed.set(true);
+            timeout.cancel(false);
+            if (rejected.getAndIncrement() % 1000 == 0)
+                LOG.warn("Customer executor is saturated, {} requests rejected so far", rejected.get());
+            result.setResult(new ResponseEntity<T>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        timeouts.shutdownNow();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "rejected", rejected.get()));
+        metrics.add(new Metric<>(PREFIX + "timedOut", timedOut.get()));
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            ThreadPoolTaskExecutor pool = (ThreadPoolTaskExecutor) executor;
+            metrics.add(new Metric<>(PREFIX + "active", pool.getActiveCount()));
+            metrics.add(new Metric<>(PREFIX + "queued", pool.getThreadPoolExecutor().getQueue().size()));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,26 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfiguration {
+    public static final String CUSTOMER_EXECUTOR = "customerExecutor";
+
+    /**
+     * Dedicated pool for repository work, so a slow Mongo only exhausts this pool and never the
+     * Tomcat workers that also serve health checks. The queue is bounded; overflow is rejected.
+     */
+    @Bean(name = CUSTOMER_EXECUTOR)
+    public ThreadPoolTaskExecutor customerExecutor(@Value("${customers.executor.pool-size:32}") int poolSize,
+                                                   @Value("${customers.executor.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("customer-");
+        return executor;
+    }
+}
@@ -0,0 +1,31 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Customers saved before search was introduced have no search keys and would never match.
+ * They are updated once at startup; afterwards every write maintains the keys.
+ */
+@Component
+public class SearchKeyBackfill {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchKeyBackfill.class);
+
+    @Autowired
+    CustomerRepository repo;
+
+    @PostConstruct
+    public void backfill() {
+        try {
+            int updated = repo.backfillSearchKeys();
+            if (updated > 0)
+                LOG.info("Added search keys to {} existing customers", updated);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not add search keys to existing customers", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package be.foreseegroup.micro.resourceservice.customer.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * With {@code customers.startup.lazy-init} the beans whose class starts with one of
+ * {@code customers.startup.lazy-packages} are only created when they are first used.
+ * By default these are the AMQP beans, which are only needed once a change event is published.
+ * A lazy bean that an eager bean depends on is still created at startup.
+ */
+@Component
+public class LazyInitPostProcessor implements BeanFactoryPostProcessor, EnvironmentAware {
+    private static final Logger LOG = LoggerFactory.getLogger(LazyInitPostProcessor.class);
+    private static final String DEFAULT_PACKAGES = "org.springframework.amqp.,org.springframework.boot.autoconfigure.amqp.";
+
+    private boolean enabled;
+    private String[] packages;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        enabled = environment.getProperty("customers.startup.lazy-init", Boolean.class, false);
+        packages = StringUtils.commaDelimitedListToStringArray(
+                environment.getProperty("customers.startup.lazy-packages", DEFAULT_PACKAGES));
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!enabled)
+            return;
+        int deferred = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.isLazyInit() || definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE)
+                continue;
+            String className = className(beanFactory, definition);
+            if (className != null && matches(className)) {
+                definition.setLazyInit(true);
+                deferred++;
+            }
+        }
+        LOG.info("Deferred the initialization of {} beans", deferred);
+    }
+
+    /**
+     * Beans declared by a {@code @Bean} method have no class of their own, they are matched on the
+     * class of the configuration that declares them.
+     */
+    private static String className(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        if (definition.getBeanClassName() != null)
+            return definition.getBeanClassName();
+        String factoryBean = definition.getFactoryBeanName();
+        if (factoryBean == null || !beanFactory.containsBeanDefinition(factoryBean))
+            return null;
+        return beanFactory.getBeanDefinition(factoryBean).getBeanClassName();
+    }
+
+    private boolean matches(String className) {
+        for (String prefix : packages) {
+            if (className.startsWith(prefix.trim()))
+                return true;
+        }
+        return false;
+    }
+}
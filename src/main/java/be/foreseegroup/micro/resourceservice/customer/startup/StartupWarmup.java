@@ -0,0 +1,205 @@
+package be.foreseegroup.micro.resourceservice.customer.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DB;
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerInitializedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Gets a freshly started instance ready for traffic before it is announced as UP.
+ * <p>
+ * Once the servlet container is listening, a background thread first opens
+ * {@code customers.startup.mongo-connections} connections to Mongo, then sends
+ * {@code customers.startup.warmup-iterations} rounds of read requests to the /customers endpoints
+ * over the local port, so request handling, the Mongo queries and the JSON encoding are compiled
+ * and the pools are filled. Only then is the Eureka status set to UP. Together with
+ * {@code eureka.instance.initialStatus: STARTING} the instance is registered, but receives no
+ * traffic, until it is warm. See the fast-startup profile.
+ * <p>
+ * The duration of every phase is published under {@code startup.customers.*}, in milliseconds;
+ * {@code ready-ms} is the time from the start of the JVM until the instance was set UP.
+ */
+@Component
+public class StartupWarmup implements ApplicationListener<EmbeddedServletContainerInitializedEvent>, PublicMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final String PREFIX = "startup.customers.";
+    private static final int WARMUP_PAGE_SIZE = 100;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Autowired
+    MongoTemplate template;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Value("${customers.startup.mongo-connections:0}")
+    int mongoConnections;
+
+    @Value("${customers.startup.warmup-iterations:0}")
+    int warmupIterations;
+
+    private volatile long contextMillis = -1;
+    private volatile long mongoMillis = -1;
+    private volatile long warmupMillis = -1;
+    private volatile long readyMillis = -1;
+
+    @Override
+    public void onApplicationEvent(EmbeddedServletContainerInitializedEvent event) {
+        //Also published for the management server when it runs on a port of its own
+        if (event.getApplicationContext() != applicationContext)
+            return;
+        contextMillis = sinceJvmStart();
+        int port = event.getEmbeddedServletContainer().getPort();
+        Thread thread = new Thread(() -> prepare(port), "customer-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void prepare(int port) {
+        long start = System.nanoTime();
+        try {
+            openMongoConnections();
+        } catch (RuntimeException | InterruptedException e) {
+            LOG.warn("Could not open the Mongo connections", e);
+        }
+        mongoMillis = millisSince(start);
+
+        start = System.nanoTime();
+        try {
+            warmup(port);
+        } catch (RuntimeException e) {
+            LOG.warn("Warmup failed", e);
+        }
+        warmupMillis = millisSince(start);
+
+        markUp();
+        readyMillis = sinceJvmStart();
+        LOG.info("Ready after {} ms (context {} ms, mongo {} ms, warmup {} ms)",
+                readyMillis, contextMillis, mongoMillis, warmupMillis);
+    }
+
+    /**
+     * Every thread holds on to its connection until all of them have one, so the pool has to
+     * open a separate connection for each.
+     */
+    private void openMongoConnections() throws InterruptedException {
+        if (mongoConnections <= 0)
+            return;
+        DB db = template.getDb();
+        CountDownLatch connected = new CountDownLatch(mongoConnections);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < mongoConnections; i++) {
+            Thread thread = new Thread(() -> {
+                db.requestStart();
+                try {
+                    db.command("ping");
+                    connected.countDown();
+                    connected.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    db.requestDone();
+                }
+            }, "customer-warmup-mongo-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+    }
+
+    /**
+     * Only reads, so warming up never changes data or publishes events.
+     */
+    private void warmup(int port) {
+        if (warmupIterations <= 0)
+            return;
+        RestTemplate restTemplate = new RestTemplate();
+        //A 404 is a hot path as well
+        restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        String root = "http://localhost:" + port + "/customers";
+        List<String> ids = ids(restTemplate.getForObject(root + "?limit=" + WARMUP_PAGE_SIZE, String.class));
+        String someIds = ids.stream().limit(10).collect(Collectors.joining(","));
+
+        for (int i = 0; i < warmupIterations; i++) {
+            restTemplate.getForObject(root + "?limit=" + WARMUP_PAGE_SIZE, String.class);
+            restTemplate.getForObject(root + "/search?name=a&limit=" + WARMUP_PAGE_SIZE, String.class);
+            restTemplate.getForObject(root + "/warmup-missing", String.class);
+            if (!ids.isEmpty()) {
+                restTemplate.getForObject(root + "/" + ids.get(i % ids.size()), String.class);
+                restTemplate.getForObject(root + "?ids=" + someIds, String.class);
+            }
+        }
+    }
+
+    private List<String> ids(String page) {
+        List<String> ids = new ArrayList<>();
+        try {
+            for (Object customer : mapper.readValue(page, List.class))
+                ids.add((String) ((Map<?, ?>) customer).get("id"));
+        } catch (Exception e) {
+            LOG.warn("Could not read the customers to warm up with", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Without a Eureka registration, e.g. when the discovery client is disabled, there is nothing to update.
+     */
+    private static void markUp() {
+        InstanceInfo instance = ApplicationInfoManager.getInstance().getInfo();
+        if (instance != null && instance.getStatus() != InstanceInfo.InstanceStatus.UP)
+            ApplicationInfoManager.getInstance().setInstanceStatus(InstanceInfo.InstanceStatus.UP);
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        if (contextMillis >= 0)
+            metrics.add(new Metric<>(PREFIX + "context-ms", contextMillis));
+        if (readyMillis >= 0) {
+            metrics.add(new Metric<>(PREFIX + "mongo-ms", mongoMillis));
+            metrics.add(new Metric<>(PREFIX + "warmup-ms", warmupMillis));
+            metrics.add(new Metric<>(PREFIX + "ready-ms", readyMillis));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,69 @@
+package be.foreseegroup.micro.resourceservice.customer.accesslog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class MpscRingBufferTest {
+
+    /** Test case: fullBufferShouldRejectInsteadOfBlocking
+     *
+     * Test if offering to a full buffer fails right away, and succeeds again once an element was polled
+     */
+    @Test
+    public void fullBufferShouldRejectInsteadOfBlocking() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++)
+            assertTrue("Offer to a buffer with room failed", buffer.offer(i));
+
+        assertFalse("Offer to a full buffer should fail", buffer.offer(4));
+        assertEquals("Oldest element was not polled first", Integer.valueOf(0), buffer.poll());
+        assertTrue("Offer after a poll failed", buffer.offer(4));
+    }
+
+    /** Test case: concurrentProducersShouldNotLoseElements
+     *
+     * Test if every element offered by concurrent producers is polled exactly once
+     */
+    @Test
+    public void concurrentProducersShouldNotLoseElements() throws Exception {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!buffer.offer(i))
+                        Thread.yield();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        Set<Integer> polled = new HashSet<>();
+        while (polled.size() < producers * perProducer) {
+            Integer element = buffer.poll();
+            if (element != null)
+                assertTrue("Element was polled twice", polled.add(element));
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertNull("Buffer should be empty", buffer.poll());
+    }
+}
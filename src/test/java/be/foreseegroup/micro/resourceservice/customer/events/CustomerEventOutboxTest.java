@@ -0,0 +1,125 @@
+package be.foreseegroup.micro.resourceservice.customer.events;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CustomerEventOutboxTest {
+
+    /** Test case: publishedEventsShouldBeSentInOrderedBatches
+     *
+     * Test if events are handed to the broker in batches of at most the batch size
+     * Every event should be sent exactly once, in the order it was published
+     */
+    @Test
+    public void publishedEventsShouldBeSentInOrderedBatches() {
+        List<List<CustomerChangeEvent>> batches = new CopyOnWriteArrayList<>();
+        CustomerEventOutbox outbox = new CustomerEventOutbox(events -> batches.add(new ArrayList<>(events)), true, 100, 3, 0, 1, 0, 0);
+
+        //Events published before start are queued, so the batches are predictable
+        for (int i = 0; i < 7; i++)
+            outbox.publish(CustomerChangeEvent.deleted("id" + i));
+        outbox.start();
+        outbox.stop();
+
+        List<String> sent = new ArrayList<>();
+        for (List<CustomerChangeEvent> batch : batches) {
+            assertTrue("Batch was larger than the batch size", batch.size() <= 3);
+            batch.forEach(event -> sent.add(event.getCustomerId()));
+        }
+        assertEquals("Amount of batches did not match", 3, batches.size());
+        assertEquals("Sent events did not match", "[id0, id1, id2, id3, id4, id5, id6]", sent.toString());
+    }
+
+    /** Test case: unconfirmedBatchShouldBeRetried
+     *
+     * Test if a batch the broker did not confirm is sent again
+     */
+    @Test
+    public void unconfirmedBatchShouldBeRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<CustomerChangeEvent> sent = new CopyOnWriteArrayList<>();
+        CustomerEventOutbox outbox = new CustomerEventOutbox(events -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new IllegalStateException("nack");
+            sent.addAll(events);
+        }, true, 100, 10, 0, 3, 0, 0);
+
+        outbox.publish(CustomerChangeEvent.created(new Customer("name1", "address1")));
+        outbox.start();
+        outbox.stop();
+
+        assertEquals("Amount of attempts did not match", 2, attempts.get());
+        assertEquals("Event was not sent after the retry", 1, sent.size());
+    }
+
+    /** Test case: unconfirmedBatchShouldBeRetriedUntilConfirmed
+     *
+     * Test if a batch is retried for as long as the broker does not confirm it, when no maximum of attempts is set
+     */
+    @Test
+    public void unconfirmedBatchShouldBeRetriedUntilConfirmed() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<CustomerChangeEvent> sent = new CopyOnWriteArrayList<>();
+        CustomerEventOutbox outbox = new CustomerEventOutbox(events -> {
+            if (attempts.incrementAndGet() <= 20)
+                throw new IllegalStateException("nack");
+            sent.addAll(events);
+        }, true, 100, 10, 0, 0, 1, 2);
+
+        outbox.publish(CustomerChangeEvent.deleted("id"));
+        outbox.start();
+        outbox.stop();
+
+        assertEquals("Amount of attempts did not match", 21, attempts.get());
+        assertEquals("Event was not sent after the retries", 1, sent.size());
+    }
+
+    /** Test case: fullOutboxShouldDropWithoutWaiting
+     *
+     * Test if publishing to a full outbox drops and counts the event right away instead of blocking the writer
+     */
+    @Test
+    public void fullOutboxShouldDropWithoutWaiting() {
+        CustomerEventOutbox outbox = new CustomerEventOutbox(events -> { }, true, 1, 10, 0, 0, 0, 0);
+
+        outbox.publish(CustomerChangeEvent.deleted("id1"));
+        long start = System.nanoTime();
+        outbox.publish(CustomerChangeEvent.deleted("id2"));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Publish waited for room in the queue", waited < 100);
+        assertEquals("Dropped event was not counted", 1L, metric(outbox, "events.customers.dropped"));
+    }
+
+    private static long metric(CustomerEventOutbox outbox, String name) {
+        for (Metric<?> metric : outbox.metrics()) {
+            if (metric.getName().equals(name))
+                return metric.getValue().longValue();
+        }
+        throw new AssertionError("Metric was not published: " + name);
+    }
+
+    /** Test case: disabledOutboxShouldNotQueueEvents
+     *
+     * Test if publishing to a disabled outbox is a no-op
+     */
+    @Test
+    public void disabledOutboxShouldNotQueueEvents() {
+        CustomerEventOutbox outbox = new CustomerEventOutbox(events -> fail("Nothing should be sent"), false, 100, 10, 0, 1, 0, 0);
+
+        outbox.publish(CustomerChangeEvent.deleted("id"));
+        outbox.start();
+        outbox.stop();
+
+        assertFalse("Disabled outbox should not be running", outbox.isRunning());
+    }
+}
@@ -0,0 +1,72 @@
+package be.foreseegroup.micro.resourceservice.customer.metrics;
+
+import be.foreseegroup.micro.resourceservice.customer.CustomerServiceApplication;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.TestRestTemplate;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = CustomerServiceApplication.class)
+@WebIntegrationTest
+public class LatencyMetricsTest {
+
+    private static final String ROOT_PATH = "http://localhost:8888";
+
+    private RestTemplate restTemplate = new TestRestTemplate();
+
+    /** Test case: requestsShouldShowUpInLatencyHistograms
+     *
+     * Test if a GET on a customer is recorded both as an endpoint call and as a repository call (the batched lookup)
+     * The histograms should be visible on the actuator metrics endpoint
+     */
+    @Test
+    public void requestsShouldShowUpInLatencyHistograms() {
+        restTemplate.getForEntity(ROOT_PATH + "/customers/latencyMetricsTestId", String.class);
+
+        ResponseEntity<Map> response = restTemplate.getForEntity(ROOT_PATH + "/metrics", Map.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+
+        Map<?, ?> metrics = response.getBody();
+        assertTrue("Endpoint histogram was not published", metrics.containsKey("histogram.customers.endpoint.getById.p99"));
+        assertTrue("Repository histogram was not published", metrics.containsKey("histogram.customers.repository.findAll.p99"));
+        assertTrue("Endpoint call was not counted", ((Number) metrics.get("histogram.customers.endpoint.getById.count")).longValue() >= 1);
+    }
+
+    /** Test case: readsShouldNotResetTheInterval
+     *
+     * Test if the percentiles describe the last complete interval, and stay the same however often they are read
+     */
+    @Test
+    public void readsShouldNotResetTheInterval() {
+        LatencyMetrics latencyMetrics = new LatencyMetrics(60);
+        latencyMetrics.record("test", TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals("Open interval should not be published", 0.0, max(latencyMetrics), 0.0);
+
+        latencyMetrics.roll();
+        assertEquals("Max of the last interval did not match", 5.0, max(latencyMetrics), 0.01);
+        assertEquals("Second read should see the same interval", 5.0, max(latencyMetrics), 0.01);
+
+        latencyMetrics.roll();
+        assertEquals("Empty interval should have no max", 0.0, max(latencyMetrics), 0.0);
+    }
+
+    private static double max(LatencyMetrics latencyMetrics) {
+        for (Metric<?> metric : latencyMetrics.metrics()) {
+            if (metric.getName().equals("histogram.customers.test.max"))
+                return metric.getValue().doubleValue();
+        }
+        throw new AssertionError("Histogram was not published");
+    }
+}
@@ -0,0 +1,71 @@
+package be.foreseegroup.micro.resourceservice.customer.mongo;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class MongoReadRoutingTest {
+
+    private final MongoConfiguration configuration = new MongoConfiguration();
+    private final MongoProperties properties = new MongoProperties();
+
+    //The driver only connects on the first operation, so no server is needed
+    private MongoClient mongo;
+    private MongoTemplate template;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration.connectionsPerHost = 10;
+        configuration.threadsAllowedToBlockMultiplier = 5;
+        configuration.maxWaitMillis = 1000;
+        configuration.connectTimeoutMillis = 1000;
+        mongo = new MongoClient(Collections.singletonList(new ServerAddress("localhost", 27017)), configuration.mongoClientOptions());
+        template = new MongoTemplate(mongo, "test");
+    }
+
+    @After
+    public void tearDown() {
+        mongo.close();
+    }
+
+    /** Test case: primaryReadsShouldShareTheTemplate
+     *
+     * Test if reads use the template of the writes when the read preference is primary
+     */
+    @Test
+    public void primaryReadsShouldShareTheTemplate() throws Exception {
+        MongoReadRouting routing = new MongoReadRouting(template, mongo, properties, configuration, "primary");
+
+        assertSame("Reads should use the primary template", template, routing.reads());
+        assertEquals("Reads were not run", "read", routing.together(() -> "read"));
+        routing.destroy();
+    }
+
+    /** Test case: secondaryReadsShouldUseAClientOfTheirOwn
+     *
+     * Test if reads get a separate client with the configured read preference, and the writes keep reading from the primary
+     */
+    @Test
+    public void secondaryReadsShouldUseAClientOfTheirOwn() throws Exception {
+        MongoReadRouting routing = new MongoReadRouting(template, mongo, properties, configuration, "secondaryPreferred");
+        try {
+            assertNotSame("Reads should not use the primary template", template, routing.reads());
+            assertEquals("Read preference of the reads did not match", ReadPreference.secondaryPreferred(),
+                    routing.reads().getDb().getReadPreference());
+            assertEquals("Read preference of the writes should not change", ReadPreference.primary(),
+                    template.getDb().getReadPreference());
+            assertEquals("Database did not match", "test", routing.reads().getDb().getName());
+        } finally {
+            routing.destroy();
+        }
+    }
+}
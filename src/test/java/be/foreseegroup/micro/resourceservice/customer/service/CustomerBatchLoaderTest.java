@@ -0,0 +1,97 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CustomerBatchLoaderTest {
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final CountDownLatch slowQuerying = new CountDownLatch(1);
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+
+    /**
+     * A repository whose findAll returns a customer for every id except "missing", and counts its calls.
+     * A query for "slow" is held until it is released.
+     */
+    private final CustomerRepository repo = (CustomerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{CustomerRepository.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("findAll") || args == null)
+                    throw new UnsupportedOperationException(method.getName());
+                queries.incrementAndGet();
+                List<Customer> found = new ArrayList<>();
+                for (Object id : (Iterable<?>) args[0]) {
+                    if ("slow".equals(id)) {
+                        slowQuerying.countDown();
+                        slowRelease.await();
+                    }
+                    if (!"missing".equals(id))
+                        found.add(new Customer((String) id, "name", "address"));
+                }
+                return found;
+            });
+
+    /** Test case: concurrentLookupsShouldShareOneQuery
+     *
+     * Test if lookups that arrive within the window while another query is running, for distinct and for the same ids,
+     * are answered by a single query
+     */
+    @Test
+    public void concurrentLookupsShouldShareOneQuery() throws Exception {
+        CustomerBatchLoader loader = new CustomerBatchLoader(repo, TimeUnit.MILLISECONDS.toMicros(500), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(11);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Customer>> results = new ArrayList<>();
+        try {
+            Future<Customer> slow = executor.submit(() -> loader.load("slow"));
+            assertTrue("Slow query did not start", slowQuerying.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 10; i++) {
+                String id = i < 5 ? "id" + i : "id0";
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return loader.load(id);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < 10; i++)
+                assertEquals("Customer did not match", i < 5 ? "id" + i : "id0", results.get(i).get(5, TimeUnit.SECONDS).getId());
+            slowRelease.countDown();
+            assertEquals("Customer did not match", "slow", slow.get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Amount of queries did not match", 2, queries.get());
+    }
+
+    /** Test case: lookupOnIdleLoaderShouldNotWaitForTheWindow
+     *
+     * Test if a lookup while no query is running is queried right away
+     */
+    @Test(timeout = 5000)
+    public void lookupOnIdleLoaderShouldNotWaitForTheWindow() {
+        CustomerBatchLoader loader = new CustomerBatchLoader(repo, TimeUnit.SECONDS.toMicros(60), 100);
+
+        assertEquals("Customer did not match", "id", loader.load("id").getId());
+        assertEquals("Amount of queries did not match", 1, queries.get());
+    }
+
+    /** Test case: fullBatchShouldNotWaitForTheWindow
+     *
+     * Test if a batch that reaches the maximum size is queried right away, and missing ids are returned as null
+     */
+    @Test
+    public void fullBatchShouldNotWaitForTheWindow() {
+        CustomerBatchLoader loader = new CustomerBatchLoader(repo, TimeUnit.SECONDS.toMicros(60), 1);
+
+        assertNull("Missing customer should be null", loader.load("missing"));
+        assertEquals("Amount of queries did not match", 1, queries.get());
+    }
+}
@@ -0,0 +1,214 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.CustomerServiceApplication;
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.TestRestTemplate;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.http.*;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = CustomerServiceApplication.class)
+@WebIntegrationTest
+public class CustomerBulkServiceTest {
+
+    private static final String BULK_RESOURCE = "http://localhost:8888/customers/_bulk";
+
+    @Autowired
+    private CustomerRepository repo;
+
+    @Autowired
+    private CustomerCache cache;
+
+    @Autowired
+    private CustomerFormats formats;
+
+    private RestTemplate restTemplate = new TestRestTemplate();
+
+    @Before
+    public void setUp() throws Exception {
+        repo.deleteAll();
+        cache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.deleteAll();
+    }
+
+    /** Test case: bulkRequestShouldApplyEveryOperation
+     *
+     * Test if a JSON array of create, update and delete operations is applied to the database
+     * The response should contain one result per operation, in request order
+     */
+    @Test
+    public void bulkRequestShouldApplyEveryOperation() {
+        Customer toUpdate = repo.save(new Customer("name1", "address1"));
+        Customer toDelete = repo.save(new Customer("name2", "address2"));
+
+        BulkOperation[] operations = {
+                new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name3", "address3")),
+                new BulkOperation(BulkOperation.Type.UPDATE, toUpdate.getId(), new Customer("nameEdited", "addressEdited")),
+                new BulkOperation(BulkOperation.Type.DELETE, toDelete.getId(), null)
+        };
+
+        ResponseEntity<BulkItemResult[]> response = post(operations, true);
+
+        //Check if we receive the correct HttpStatus code and one result per operation
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        BulkItemResult[] results = response.getBody();
+        assertEquals("Amount of results did not match", 3, results.length);
+        assertEquals("Create result did not match", HttpStatus.OK.value(), results[0].getStatus());
+        assertEquals("Update result did not match", HttpStatus.OK.value(), results[1].getStatus());
+        assertEquals("Delete result did not match", HttpStatus.NO_CONTENT.value(), results[2].getStatus());
+
+        //Check if the operations were applied to the database
+        assertNotNull("Created entry was not returned with an id", results[0].getId());
+        assertEquals("Created entry was not saved", "name3", repo.findOne(results[0].getId()).getName());
+        assertEquals("Updated entry was not saved", "nameEdited", repo.findOne(toUpdate.getId()).getName());
+        assertNull("Deleted entry was not removed", repo.findOne(toDelete.getId()));
+    }
+
+    /** Test case: orderedBulkRequestShouldStopAtFirstFailure
+     *
+     * Test if an ordered bulk request does not execute anything after an operation on an unexisting entry
+     * The failed operation should have status BAD_REQUEST (400), the skipped ones FAILED_DEPENDENCY (424)
+     */
+    @Test
+    public void orderedBulkRequestShouldStopAtFirstFailure() {
+        BulkOperation[] operations = {
+                new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name1", "address1")),
+                new BulkOperation(BulkOperation.Type.UPDATE, "unexistingid", new Customer("name2", "address2")),
+                new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name3", "address3"))
+        };
+
+        BulkItemResult[] results = post(operations, true).getBody();
+
+        assertEquals("Create result did not match", HttpStatus.OK.value(), results[0].getStatus());
+        assertEquals("Update result did not match", HttpStatus.BAD_REQUEST.value(), results[1].getStatus());
+        assertEquals("Skipped result did not match", HttpStatus.FAILED_DEPENDENCY.value(), results[2].getStatus());
+        assertEquals("Only the first entry should have been added", 1, repo.count());
+    }
+
+    /** Test case: unorderedBulkRequestShouldContinueAfterFailure
+     *
+     * Test if an unordered bulk request executes every valid operation, even after a failed one
+     */
+    @Test
+    public void unorderedBulkRequestShouldContinueAfterFailure() {
+        BulkOperation[] operations = {
+                new BulkOperation(BulkOperation.Type.DELETE, "unexistingid", null),
+                new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name1", "address1"))
+        };
+
+        BulkItemResult[] results = post(operations, false).getBody();
+
+        assertEquals("Delete result did not match", HttpStatus.BAD_REQUEST.value(), results[0].getStatus());
+        assertEquals("Create result did not match", HttpStatus.OK.value(), results[1].getStatus());
+        assertEquals("The valid entry was not added", 1, repo.count());
+    }
+
+    /** Test case: bulkUpdateShouldReplaceEveryField
+     *
+     * Test if a bulk update, like a PUT, clears the fields that it does not set
+     */
+    @Test
+    public void bulkUpdateShouldReplaceEveryField() {
+        Customer toUpdate = repo.save(new Customer("name1", "address1"));
+
+        BulkOperation[] operations = {
+                new BulkOperation(BulkOperation.Type.UPDATE, toUpdate.getId(), new Customer("nameEdited", null))
+        };
+        post(operations, true);
+
+        Customer updated = repo.findOne(toUpdate.getId());
+        assertEquals("Name was not updated", "nameEdited", updated.getName());
+        assertNull("Address was not cleared", updated.getAddress());
+    }
+
+    /** Test case: failedBulkRequestShouldEndWithAnErrorResult
+     *
+     * Test if a request that turns out to be malformed halfway is still answered with a complete JSON array
+     * The last result should have status BAD_REQUEST (400) and the index of the first operation that was not confirmed
+     */
+    @Test
+    public void failedBulkRequestShouldEndWithAnErrorResult() {
+        String body = "[{\"op\":\"create\",\"customer\":{\"name\":\"name1\",\"address\":\"address1\"}},{\"op\":";
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<BulkItemResult[]> response = restTemplate.postForEntity(BULK_RESOURCE,
+                new HttpEntity<>(body, requestHeaders), BulkItemResult[].class);
+
+        BulkItemResult[] results = response.getBody();
+        BulkItemResult last = results[results.length - 1];
+        assertEquals("Failure result did not match", HttpStatus.BAD_REQUEST.value(), last.getStatus());
+        assertEquals("Failure index did not match", 0, last.getIndex());
+        assertNotNull("Failure should have an error", last.getError());
+    }
+
+    /** Test case: ndjsonBulkRequestShouldReturnNdjsonResults
+     *
+     * Test if a bulk request sent as NDJSON is applied and answered with one NDJSON result line per operation
+     */
+    @Test
+    public void ndjsonBulkRequestShouldReturnNdjsonResults() {
+        String body = "{\"op\":\"create\",\"customer\":{\"name\":\"name1\",\"address\":\"address1\"}}\n"
+                + "{\"op\":\"create\",\"customer\":{\"name\":\"name2\",\"address\":\"address2\"}}\n";
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.valueOf(CustomerService.NDJSON));
+        ResponseEntity<String> response = restTemplate.postForEntity(BULK_RESOURCE, new HttpEntity<>(body, requestHeaders), String.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of result lines did not match", 2, response.getBody().split("\n").length);
+        assertEquals("Entries were not added", 2, repo.count());
+    }
+
+    /** Test case: smileBulkRequestShouldReturnSmileResults
+     *
+     * Test if a bulk request sent as a sequence of Smile values is applied and answered with Smile results
+     */
+    @Test
+    public void smileBulkRequestShouldReturnSmileResults() throws Exception {
+        ObjectMapper smile = formats.mapper(CustomerFormats.SMILE);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        JsonGenerator generator = smile.getFactory().createGenerator(body);
+        generator.writeObject(new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name1", "address1")));
+        generator.writeObject(new BulkOperation(BulkOperation.Type.CREATE, null, new Customer("name2", "address2")));
+        generator.close();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(CustomerFormats.SMILE);
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(BULK_RESOURCE, new HttpEntity<>(body.toByteArray(), requestHeaders), byte[].class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        List<BulkItemResult> results = smile.reader(BulkItemResult.class).<BulkItemResult>readValues(response.getBody()).readAll();
+        assertEquals("Amount of results did not match", 2, results.size());
+        assertEquals("Entries were not added", 2, repo.count());
+    }
+
+    private ResponseEntity<BulkItemResult[]> post(BulkOperation[] operations, boolean ordered) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<BulkOperation[]> httpEntity = new HttpEntity<>(operations, requestHeaders);
+        return restTemplate.postForEntity(BULK_RESOURCE + "?ordered=" + ordered, httpEntity, BulkItemResult[].class);
+    }
+}
@@ -0,0 +1,85 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CustomerCacheTest {
+
+    private final Map<String, Customer> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile CountDownLatch loading = new CountDownLatch(0);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    /**
+     * A repository that finds the stored customers by id, and can hold a find after it read the document.
+     */
+    private final CustomerRepository repo = (CustomerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{CustomerRepository.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("findOne") || args.length != 1)
+                    throw new UnsupportedOperationException(method.getName());
+                loads.incrementAndGet();
+                Customer found = stored.get(args[0]);
+                loading.countDown();
+                release.await();
+                return found;
+            });
+
+    private final CustomerCache cache = new CustomerCache(repo, new CustomerBatchLoader(repo, 0, 1), 100, 60);
+
+    private static Customer customer(String name, long version) {
+        Customer customer = new Customer("id", name, "address");
+        customer.setVersion(version);
+        return customer;
+    }
+
+    /** Test case: olderWriteShouldNotReplaceNewerVersion
+     *
+     * Test if a write that reaches the cache after a newer one is ignored, and a write after a delete is not cached
+     */
+    @Test
+    public void olderWriteShouldNotReplaceNewerVersion() {
+        cache.put(customer("new", 2));
+        cache.put(customer("old", 1));
+        assertEquals("Older write replaced a newer version", "new", cache.get("id").getName());
+        assertEquals("Nothing should be loaded while cached", 0, loads.get());
+
+        cache.delete("id");
+        assertNull("Deleted customer should be cached as missing", cache.get("id"));
+        stored.put("id", customer("recreated", 0));
+        cache.put(customer("stale", 3));
+        assertEquals("Write after a delete should be loaded again", "recreated", cache.get("id").getName());
+        assertEquals("Amount of loads did not match", 1, loads.get());
+    }
+
+    /** Test case: loadThatStartedBeforeWriteShouldNotBeCached
+     *
+     * Test if a load that read the document before a write, and finished after the write, is run again
+     */
+    @Test
+    public void loadThatStartedBeforeWriteShouldNotBeCached() throws Exception {
+        stored.put("id", customer("before", 0));
+        loading = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Customer> read = executor.submit(() -> cache.get("id"));
+            assertTrue("Load did not start", loading.await(5, TimeUnit.SECONDS));
+            stored.put("id", customer("after", 1));
+            cache.invalidate("id");
+            release.countDown();
+
+            assertEquals("Load that started before the write was returned", "after", read.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Cached customer did not match", "after", cache.get("id").getName());
+        assertEquals("Amount of loads did not match", 2, loads.get());
+    }
+}
@@ -0,0 +1,102 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.model.BulkItemResult;
+import be.foreseegroup.micro.resourceservice.customer.model.BulkOperation;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CustomerGroupCommitTest {
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    /**
+     * A repository whose bulkWrite creates every customer except the ones named "duplicate", and counts its calls.
+     */
+    private final CustomerRepository repo = (CustomerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{CustomerRepository.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("bulkWrite"))
+                    throw new UnsupportedOperationException(method.getName());
+                int write = writes.incrementAndGet();
+                List<BulkItemResult> results = new ArrayList<>();
+                List<?> operations = (List<?>) args[0];
+                for (int i = 0; i < operations.size(); i++) {
+                    BulkOperation operation = (BulkOperation) operations.get(i);
+                    if ("duplicate".equals(operation.getCustomer().getName()))
+                        results.add(new BulkItemResult(i, operation.getOp(), null, HttpStatus.CONFLICT.value(), "duplicate key"));
+                    else
+                        results.add(new BulkItemResult(i, operation.getOp(), write + "-" + i, HttpStatus.OK.value(), null));
+                }
+                return results;
+            });
+
+    /** Test case: concurrentCreatesShouldShareOneWrite
+     *
+     * Test if creates that arrive within the window are written together, and every caller gets its own id
+     */
+    @Test
+    public void concurrentCreatesShouldShareOneWrite() throws Exception {
+        CustomerGroupCommit groupCommit = new CustomerGroupCommit(repo, TimeUnit.MILLISECONDS.toMicros(500), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Customer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                Customer customer = new Customer("name" + i, "address" + i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return groupCommit.create(customer);
+                }));
+            }
+            start.countDown();
+
+            Set<String> ids = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                Customer created = results.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals("Customer did not match", "name" + i, created.getName());
+                assertEquals("Version did not match", Long.valueOf(0), created.getVersion());
+                ids.add(created.getId());
+            }
+            assertEquals("Every customer should get its own id", 10, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Amount of writes did not match", 1, writes.get());
+    }
+
+    /** Test case: failedCreateShouldOnlyFailItsOwnCaller
+     *
+     * Test if a duplicate in a full batch is reported to its own caller only, and the batch is written without waiting for the window
+     */
+    @Test
+    public void failedCreateShouldOnlyFailItsOwnCaller() throws Exception {
+        CustomerGroupCommit groupCommit = new CustomerGroupCommit(repo, TimeUnit.SECONDS.toMicros(60), 2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Customer> created = executor.submit(() -> groupCommit.create(new Customer("name1", "address1")));
+            Future<Customer> duplicate = executor.submit(() -> groupCommit.create(new Customer("duplicate", "address2")));
+
+            assertNotNull("Created entry did not get an id", created.get(5, TimeUnit.SECONDS).getId());
+            try {
+                duplicate.get(5, TimeUnit.SECONDS);
+                fail("Duplicate create should have failed");
+            } catch (ExecutionException e) {
+                assertTrue("Duplicate create did not fail with a duplicate key", e.getCause() instanceof DuplicateKeyException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals("Amount of writes did not match", 1, writes.get());
+    }
+}
@@ -0,0 +1,230 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerChangeEvent;
+import be.foreseegroup.micro.resourceservice.customer.events.CustomerEventOutbox;
+import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class CustomerReadModelTest {
+
+    private final List<Customer> stored = new ArrayList<>();
+    private final AtomicLong revision = new AtomicLong();
+    private final AtomicInteger fullReads = new AtomicInteger();
+    //Writes that happen while the collection is streamed, or while customers are read by id
+    private Runnable whileStreaming = () -> { };
+    private Runnable whileFinding = () -> { };
+
+    /**
+     * A repository that streams the stored customers, with a revision that any test can move.
+     */
+    @SuppressWarnings("unchecked")
+    private final CustomerRepository repo = (CustomerRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{CustomerRepository.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "streamAll":
+                        fullReads.incrementAndGet();
+                        stored.forEach((Consumer<Customer>) args[0]);
+                        whileStreaming.run();
+                        return null;
+                    case "streamModifiedSince":
+                        for (Customer customer : stored) {
+                            if (customer.getModified() != null && !customer.getModified().before((Date) args[0]))
+                                ((Consumer<Customer>) args[1]).accept(customer);
+                        }
+                        return null;
+                    case "streamIds":
+                        //Like Mongo, string ids before ObjectIds
+                        stored.stream().map(Customer::getId)
+                                .sorted(Comparator.comparing(ObjectId::isValid).thenComparing(Comparator.naturalOrder()))
+                                .forEach((Consumer<String>) args[0]);
+                        return null;
+                    case "findAll":
+                        List<Customer> found = new ArrayList<>();
+                        for (Object id : (Iterable<?>) args[0])
+                            stored.stream().filter(customer -> customer.getId().equals(id)).forEach(found::add);
+                        whileFinding.run();
+                        return found;
+                    case "count":
+                        return (long) stored.size();
+                    case "revision":
+                        return "5-" + revision.get();
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    private final CustomerEventOutbox events = new CustomerEventOutbox(batch -> { }, false, 1, 1, 0, 1, 0, 0);
+    private final CustomerReadModel model = new CustomerReadModel(repo, events, true, 1000, 5000);
+
+    private final String first = new ObjectId().toString();
+    private final String second = new ObjectId().toString();
+
+    @Before
+    public void setUp() {
+        stored.add(customer(second, "Bob", "Main Street 2", 3L));
+        stored.add(customer(first, "alice", "Main Street 1", 0L));
+        stored.add(customer("legacy", "Alfred", "Side Street 1", 1L));
+    }
+
+    private static Customer customer(String id, String name, String address, Long version) {
+        Customer customer = new Customer(id, name, address);
+        customer.setVersion(version);
+        return customer;
+    }
+
+    /**
+     * Replaces or adds a customer in the collection, stamped like a write through the repository.
+     */
+    private void store(String id, String name, String address, Long version) {
+        stored.removeIf(customer -> customer.getId().equals(id));
+        Customer customer = customer(id, name, address, version);
+        customer.setModified(new Date());
+        stored.add(customer);
+    }
+
+    private static List<String> ids(List<Customer> customers) {
+        List<String> ids = new ArrayList<>();
+        customers.forEach(customer -> ids.add(customer.getId()));
+        return ids;
+    }
+
+    /** Test case: loadedModelShouldPageAndSearchLikeMongo
+     *
+     * Test if the model serves nothing before it is loaded, and after loading pages in the order of Mongo,
+     * with string ids before ObjectIds, and searches case-insensitively on prefixes, in the order of the search key and the id
+     */
+    @Test
+    public void loadedModelShouldPageAndSearchLikeMongo() {
+        assertFalse("Model should not be ready before it is loaded", model.ready());
+        model.load();
+        assertTrue("Model was not ready after loading", model.ready());
+        assertEquals("Revision of a loaded model should be the collection revision", "5-0", model.revision());
+
+        assertEquals("Page did not match", Arrays.asList("legacy", first, second), ids(model.findPage(null, 10)));
+        assertEquals("Page after an id did not match", Arrays.asList(first), ids(model.findPage("legacy", 1)));
+        assertEquals("Search on name did not match", Arrays.asList("legacy", first), ids(model.search("AL", null, null, null, 10)));
+        assertEquals("Search on name after an id did not match", Arrays.asList(first), ids(model.search("al", null, null, "legacy", 10)));
+        assertEquals("Search on name and address did not match", Arrays.asList(first),
+                ids(model.search("al", "main", null, null, 10)));
+        assertEquals("Search on address after a search key did not match", Arrays.asList(second),
+                ids(model.search(null, "main", "main street 1", first, 10)));
+        assertEquals("Multi-get did not match", Arrays.asList(second, "legacy"),
+                ids(model.getAll(Arrays.asList(second, "unexisting", "legacy", second))));
+
+        Customer customer = model.get(second);
+        assertEquals("Name did not match", "Bob", customer.getName());
+        assertEquals("Version did not match", Long.valueOf(3), customer.getVersion());
+        assertNull("Unexisting customer should not be found", model.get("unexisting"));
+    }
+
+    /** Test case: ownWritesShouldBeAppliedAndOtherWritesCaughtUp
+     *
+     * Test if the writes of this instance are applied from its change events and change the revision of the model,
+     * and writes of other instances are read from their stamps, deletes included, without loading the collection again
+     */
+    @Test
+    public void ownWritesShouldBeAppliedAndOtherWritesCaughtUp() {
+        model.load();
+        String loaded = model.revision();
+
+        Customer created = customer("new", "Carol", "Church Street 1", 0L);
+        events.publish(CustomerChangeEvent.created(created));
+        events.publish(CustomerChangeEvent.updated(customer(second, "Bobby", "Main Street 3", 4L)));
+        //Bulk updates carry no version
+        events.publish(CustomerChangeEvent.updated(customer(first, "Alicia", null, null)));
+        events.publish(CustomerChangeEvent.deleted("legacy"));
+        //A late event of an older version is ignored
+        events.publish(CustomerChangeEvent.updated(customer(second, "Robert", "Main Street 2", 3L)));
+
+        assertNotEquals("Revision should change after a write", loaded, model.revision());
+        assertEquals("Page did not match", Arrays.asList("new", first, second), ids(model.findPage(null, 10)));
+        assertEquals("Update was not applied", "Bobby", model.get(second).getName());
+        assertEquals("Search did not see the update", Arrays.asList(second), ids(model.search("bobby", null, null, null, 10)));
+        assertTrue("Search still saw the old name", model.search("bob", "main street 2", null, null, 10).isEmpty());
+        assertNull("Bulk update did not clear the address", model.get(first).getAddress());
+        assertEquals("Bulk update did not increment the version", Long.valueOf(1), model.version(first));
+
+        //The same writes in the collection
+        store("new", "Carol", "Church Street 1", 0L);
+        store(second, "Bobby", "Main Street 3", 4L);
+        store(first, "Alicia", null, 1L);
+        stored.removeIf(customer -> customer.getId().equals("legacy"));
+        revision.incrementAndGet();
+        model.catchUp();
+        assertEquals("Revision of a caught up model should be the collection revision", "5-1", model.revision());
+
+        //Writes of another instance
+        store(second, "Robert", "Main Street 2", 5L);
+        store("other", "Dave", "Mill Lane 1", 0L);
+        stored.removeIf(customer -> customer.getId().equals(first));
+        revision.incrementAndGet();
+        model.catchUp();
+        assertEquals("Update of the other instance was not read", "Robert", model.get(second).getName());
+        assertEquals("Customer of the other instance was not read", "Dave", model.get("other").getName());
+        assertNull("Delete of the other instance was not applied", model.get(first));
+        assertEquals("Search did not see the other instance", Arrays.asList("other"), ids(model.search("d", null, null, null, 10)));
+        assertEquals("Revision of a caught up model should be the collection revision", "5-2", model.revision());
+        assertEquals("Collection should only be streamed by the load", 1, fullReads.get());
+    }
+
+    /** Test case: loadShouldReadBulkUpdatesAgainWithoutBlockingWrites
+     *
+     * Test if a customer updated without a version while the collection is streamed is read again after the stream,
+     * and if writes of this instance are applied while it is read instead of waiting for the read
+     */
+    @Test
+    public void loadShouldReadBulkUpdatesAgainWithoutBlockingWrites() {
+        whileStreaming = () -> {
+            store(first, "Alicia", null, 1L);
+            //Bulk updates carry no version
+            events.publish(CustomerChangeEvent.updated(customer(first, "Alicia", null, null)));
+        };
+        whileFinding = () -> {
+            Thread writer = new Thread(() -> events.publish(CustomerChangeEvent.updated(customer(second, "Bobby", "Main Street 3", 4L))));
+            writer.start();
+            try {
+                writer.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse("Write waited for the read of the load", writer.isAlive());
+        };
+        model.load();
+
+        assertEquals("Bulk update was not read again", "Alicia", model.get(first).getName());
+        assertEquals("Version of the bulk update did not match", Long.valueOf(1), model.version(first));
+        assertEquals("Write during the read was not applied", "Bobby", model.get(second).getName());
+    }
+
+    /** Test case: unverifiedRevisionsShouldDifferBetweenInstances
+     *
+     * Test if two instances that loaded the same collection and each applied a different write of their own
+     * do not hand out the same revision
+     */
+    @Test
+    public void unverifiedRevisionsShouldDifferBetweenInstances() {
+        CustomerEventOutbox otherEvents = new CustomerEventOutbox(batch -> { }, false, 1, 1, 0, 1, 0, 0);
+        CustomerReadModel other = new CustomerReadModel(repo, otherEvents, true, 1000, 5000);
+        model.load();
+        other.load();
+        assertEquals("Instances that loaded the same collection should agree", model.revision(), other.revision());
+
+        events.publish(CustomerChangeEvent.deleted("legacy"));
+        otherEvents.publish(CustomerChangeEvent.deleted(first));
+        assertNotEquals("Instances with different writes should not agree", model.revision(), other.revision());
+    }
+}
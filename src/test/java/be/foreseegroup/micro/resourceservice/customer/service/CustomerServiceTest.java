@@ -1,7 +1,9 @@
 package be.foreseegroup.micro.resourceservice.customer.service;
 
 import be.foreseegroup.micro.resourceservice.customer.CustomerServiceApplication;
+import be.foreseegroup.micro.resourceservice.customer.format.CustomerFormats;
 import be.foreseegroup.micro.resourceservice.customer.model.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,7 +17,13 @@ import org.springframework.http.*;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -31,19 +39,27 @@ public class CustomerServiceTest {
     private static final String ROOT_PATH = "http://localhost:8888";
     private static final String UNIT_PATH = "/customers";
     private static final String UNIT_RESOURCE = ROOT_PATH + UNIT_PATH;
-    private static final Customer CONSULTANT_1 = new Customer("name1","address1");
-    private static final Customer CONSULTANT_2 = new Customer("name2","address2");
+    //Saving assigns an id and a version, so every test gets fresh instances
+    private final Customer CONSULTANT_1 = new Customer("name1","address1");
+    private final Customer CONSULTANT_2 = new Customer("name2","address2");
     private static final String NON_EXISTING_ID = "nonExistingId";
 
     @Autowired
     private CustomerRepository repo;
 
+    @Autowired
+    private CustomerCache cache;
+
+    @Autowired
+    private CustomerFormats formats;
+
     private RestTemplate restTemplate = new TestRestTemplate();
 
 
     @Before
     public void setUp() throws Exception {
         repo.deleteAll();
+        cache.invalidateAll();
     }
 
     @After
@@ -111,6 +127,50 @@ public class CustomerServiceTest {
         assertNull("Http Request response body did contain a Customer object", response.getBody());
     }
 
+    /** Test case: getAfterEditShouldReturnEditedPerson
+     *
+     * Test if a GET after a PUT on the same entry returns the edited entry, even if the entry was cached by an earlier GET
+     */
+    @Test
+    public void getAfterEditShouldReturnEditedPerson() {
+        Customer savedCustomer = repo.save(new Customer("name1", "address1"));
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+
+        //Load the entry into the cache
+        restTemplate.getForEntity(url, Customer.class);
+
+        //Edit the entry through the service
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<Customer> httpEntity = new HttpEntity<>(new Customer("nameEdited", "addressEdited"), requestHeaders);
+        restTemplate.exchange(url, HttpMethod.PUT, httpEntity, Customer.class);
+
+        //Check if the edited entry is returned
+        ResponseEntity<Customer> response = restTemplate.getForEntity(url, Customer.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Returned entry was stale", "nameEdited", response.getBody().getName());
+    }
+
+    /** Test case: getAfterDeleteShouldReturnHttpNotFoundError
+     *
+     * Test if a GET after a DELETE on the same entry returns HttpStatus code: NOT_FOUND (404), even if the entry was cached
+     */
+    @Test
+    public void getAfterDeleteShouldReturnHttpNotFoundError() {
+        Customer savedCustomer = repo.save(new Customer("name1", "address1"));
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+
+        //Load the entry into the cache
+        restTemplate.getForEntity(url, Customer.class);
+
+        //Delete the entry through the service
+        restTemplate.delete(url);
+
+        //Check if the entry is no longer returned
+        ResponseEntity<Customer> response = restTemplate.getForEntity(url, Customer.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
     /** Test case: getPersonsShouldReturnAllPersons
      *
      * Test if a GET results without specifying an ID results all the entries
@@ -152,6 +212,381 @@ public class CustomerServiceTest {
         assertEquals("Response body size did not match", 2, responseList.size());
     }
 
+    /** Test case: getPersonsWithLimitShouldReturnOnePageAndNextLink
+     *
+     * Test if a GET with a limit only returns that many entries, ordered by id
+     * The response should contain a Link header pointing to the next page
+     * Following that link should return the remaining entries without a new Link header
+     */
+    @Test
+    public void getPersonsWithLimitShouldReturnOnePageAndNextLink() {
+        //Add three Customers to the database
+        repo.save(new Customer("name1", "address1"));
+        repo.save(new Customer("name2", "address2"));
+        repo.save(new Customer("name3", "address3"));
+
+        String url = UNIT_RESOURCE + "?limit=2";
+
+        //Instantiate the HTTP GET Request
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(url, Customer[].class);
+
+        //Check if we receive the correct HttpStatus code and page size
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Response body size did not match", 2, response.getBody().length);
+
+        //Check if the ids are returned in ascending order
+        assertTrue("Entries were not ordered by id", response.getBody()[0].getId().compareTo(response.getBody()[1].getId()) < 0);
+
+        //Check if a link to the next page was returned
+        String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+        assertNotNull("Response did not contain a Link header", link);
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+
+        //Follow the link to the second page
+        ResponseEntity<Customer[]> nextResponse = restTemplate.getForEntity(next, Customer[].class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, nextResponse.getStatusCode());
+        assertEquals("Second page size did not match", 1, nextResponse.getBody().length);
+        assertNull("Last page should not contain a Link header", nextResponse.getHeaders().getFirst(HttpHeaders.LINK));
+    }
+
+    /** Test case: getPersonsWithLimitShouldPageAcrossStringAndObjectIds
+     *
+     * Test if following the Link headers one entry at a time returns every entry exactly once
+     * when some customers have a string id of their own and others a generated object id
+     */
+    @Test
+    public void getPersonsWithLimitShouldPageAcrossStringAndObjectIds() {
+        //Add two Customers with a string id and two with a generated id
+        Customer first = new Customer("name1", "address1");
+        first.setId("customer-a");
+        repo.save(first);
+        Customer second = new Customer("name2", "address2");
+        second.setId("customer-b");
+        repo.save(second);
+        repo.save(new Customer("name3", "address3"));
+        repo.save(new Customer("name4", "address4"));
+
+        //Follow the links until the last page
+        List<String> ids = new ArrayList<>();
+        String url = UNIT_RESOURCE + "?limit=1";
+        while (url != null) {
+            ResponseEntity<Customer[]> response = restTemplate.getForEntity(url, Customer[].class);
+            assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+            for (Customer customer : response.getBody())
+                ids.add(customer.getId());
+            String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+            url = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        }
+
+        //Check if every entry was returned once
+        assertEquals("Number of entries did not match", 4, ids.size());
+        assertEquals("Entries were returned more than once", 4, new HashSet<>(ids).size());
+    }
+
+    /** Test case: getPersonsWithInvalidLimitShouldReturnBadRequest
+     *
+     * Test if a GET with a limit outside of the allowed range returns HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void getPersonsWithInvalidLimitShouldReturnBadRequest() {
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "?limit=0", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /** Test case: getPersonsByIdsShouldReturnExistingPersonsInOrder
+     *
+     * Test if a GET with an ids parameter returns the existing entries in the order of the ids
+     * Ids that do not exist should be left out
+     */
+    @Test
+    public void getPersonsByIdsShouldReturnExistingPersonsInOrder() {
+        Customer savedCustomer1 = repo.save(CONSULTANT_1);
+        Customer savedCustomer2 = repo.save(CONSULTANT_2);
+
+        String url = UNIT_RESOURCE + "?ids=" + savedCustomer2.getId() + "," + NON_EXISTING_ID + "," + savedCustomer1.getId();
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(url, Customer[].class);
+
+        //Check if we receive the correct HttpStatus code and the existing entries in order
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of entries did not match", 2, response.getBody().length);
+        assertEquals("First entry did not match", savedCustomer2.getId(), response.getBody()[0].getId());
+        assertEquals("Second entry did not match", savedCustomer1.getId(), response.getBody()[1].getId());
+    }
+
+    /** Test case: getPersonsWithFieldsShouldOnlyReturnThoseFields
+     *
+     * Test if a GET with a fields parameter returns only the requested fields, and always the id
+     */
+    @Test
+    public void getPersonsWithFieldsShouldOnlyReturnThoseFields() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+
+        ResponseEntity<Map[]> response = restTemplate.getForEntity(UNIT_RESOURCE + "?fields=name", Map[].class);
+
+        //Check if we receive the correct HttpStatus code and only the requested fields
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of entries did not match", 1, response.getBody().length);
+        Map<?, ?> customer = response.getBody()[0];
+        assertEquals("Returned fields did not match", new HashSet<>(Arrays.asList("id", "name")), customer.keySet());
+        assertEquals("Id did not match", savedCustomer.getId(), customer.get("id"));
+        assertEquals("Name did not match", CONSULTANT_1.getName(), customer.get("name"));
+    }
+
+    /** Test case: getPersonWithFieldsShouldOnlyReturnThoseFields
+     *
+     * Test if a GET on a single entry with a fields parameter returns only the requested fields and still has an ETag
+     */
+    @Test
+    public void getPersonWithFieldsShouldOnlyReturnThoseFields() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+
+        ResponseEntity<Map> response = restTemplate.getForEntity(UNIT_RESOURCE + "/" + savedCustomer.getId() + "?fields=address", Map.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Returned fields did not match", new HashSet<>(Arrays.asList("id", "address")), response.getBody().keySet());
+        assertNotNull("Response did not contain an ETag", response.getHeaders().getETag());
+    }
+
+    /** Test case: getPersonsWithUnknownFieldShouldReturnBadRequest
+     *
+     * Test if a fields parameter with a field that does not exist is rejected with HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void getPersonsWithUnknownFieldShouldReturnBadRequest() {
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "?fields=name,unknown", String.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /** Test case: getPersonsWithSmileAcceptShouldReturnSmile
+     *
+     * Test if a GET that accepts Smile gets the entries encoded as Smile
+     */
+    @Test
+    public void getPersonsWithSmileAcceptShouldReturnSmile() throws Exception {
+        repo.save(CONSULTANT_1);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Collections.singletonList(CustomerFormats.SMILE));
+        ResponseEntity<byte[]> response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+
+        //Check if we receive the correct HttpStatus code and content type, and if the body decodes as Smile
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertTrue("Content type did not match", CustomerFormats.SMILE.isCompatibleWith(response.getHeaders().getContentType()));
+        Customer[] customers = formats.mapper(CustomerFormats.SMILE).readValue(response.getBody(), Customer[].class);
+        assertEquals("Amount of entries did not match", 1, customers.length);
+        assertEquals("Name did not match", CONSULTANT_1.getName(), customers[0].getName());
+    }
+
+    /** Test case: getPersonWithSmileAcceptShouldReturnOwnETag
+     *
+     * Test if a GET that accepts Smile gets an ETag that differs from the JSON one, and a Vary header on Accept
+     * Revalidating with the JSON ETag should return the Smile body, revalidating with the Smile ETag no body,
+     * and the Smile ETag should still be accepted in an If-Match header
+     */
+    @Test
+    public void getPersonWithSmileAcceptShouldReturnOwnETag() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+        String jsonETag = restTemplate.getForEntity(url, Customer.class).getHeaders().getETag();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Collections.singletonList(CustomerFormats.SMILE));
+        ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+        String smileETag = response.getHeaders().getETag();
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertNotNull("GET response did not contain an ETag", smileETag);
+        assertNotEquals("Smile and JSON had the same ETag", jsonETag, smileETag);
+        assertEquals("Vary header did not match", HttpHeaders.ACCEPT, response.getHeaders().getFirst(HttpHeaders.VARY));
+
+        //Revalidate the Smile body with the JSON ETag and with its own
+        requestHeaders.setIfNoneMatch(jsonETag);
+        response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+        assertEquals("JSON ETag matched the Smile body", HttpStatus.OK, response.getStatusCode());
+        requestHeaders.setIfNoneMatch(smileETag);
+        response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+        assertEquals("Smile ETag did not match the Smile body", HttpStatus.NOT_MODIFIED, response.getStatusCode());
+
+        //Edit the entry with the Smile ETag in the If-Match header
+        HttpHeaders updateHeaders = new HttpHeaders();
+        updateHeaders.setContentType(MediaType.APPLICATION_JSON);
+        updateHeaders.set(HttpHeaders.IF_MATCH, smileETag);
+        HttpEntity<Customer> httpEntity = new HttpEntity<>(new Customer("nameEdited", "addressEdited"), updateHeaders);
+        ResponseEntity<Customer> updateResponse = restTemplate.exchange(url, HttpMethod.PUT, httpEntity, Customer.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, updateResponse.getStatusCode());
+    }
+
+    /** Test case: getPersonsWithWildcardAcceptShouldReturnJson
+     *
+     * Test if JSON stays the default for a client that accepts anything
+     */
+    @Test
+    public void getPersonsWithWildcardAcceptShouldReturnJson() {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Collections.singletonList(MediaType.ALL));
+        ResponseEntity<String> response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.GET, new HttpEntity<>(requestHeaders), String.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertTrue("Content type did not match", MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+    }
+
+    /** Test case: createCustomerWithCborBodyShouldCreateCustomer
+     *
+     * Test if a POST with a CBOR body is saved to the database and answered in CBOR
+     */
+    @Test
+    public void createCustomerWithCborBodyShouldCreateCustomer() throws Exception {
+        ObjectMapper cbor = formats.mapper(CustomerFormats.CBOR);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(CustomerFormats.CBOR);
+        requestHeaders.setAccept(Collections.singletonList(CustomerFormats.CBOR));
+        HttpEntity<byte[]> httpEntity = new HttpEntity<>(cbor.writeValueAsBytes(CONSULTANT_1), requestHeaders);
+        ResponseEntity<byte[]> response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.POST, httpEntity, byte[].class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        Customer createdCustomer = cbor.readValue(response.getBody(), Customer.class);
+        assertEquals("Entry was not saved", CONSULTANT_1.getName(), repo.findOne(createdCustomer.getId()).getName());
+    }
+
+    /** Test case: streamPersonsShouldReturnOneLinePerPerson
+     *
+     * Test if a streaming GET returns every entry as a separate line of JSON (NDJSON)
+     * It should return HttpStatus code: OK (200)
+     */
+    @Test
+    public void streamPersonsShouldReturnOneLinePerPerson() {
+        //Add the Customers that we will try to stream from the database
+        repo.save(new Customer("name1", "address1"));
+        repo.save(new Customer("name2", "address2"));
+
+        //Instantiate the HTTP GET Request
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "?stream", String.class);
+
+        //Check if we receive the correct HttpStatus code and content type
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        MediaType contentType = response.getHeaders().getContentType();
+        assertEquals("Content type did not match", CustomerService.NDJSON, contentType.getType() + "/" + contentType.getSubtype());
+
+        //Check if every entry was written on its own line
+        String[] lines = response.getBody().split("\n");
+        assertEquals("Amount of streamed entries did not match", 2, lines.length);
+        assertTrue("Streamed line did not contain an entry", lines[0].contains("name1"));
+    }
+
+    /** Test case: searchByNamePrefixShouldIgnoreCase
+     *
+     * Test if a search on a name prefix returns every entry whose name starts with it, regardless of case
+     * It should return HttpStatus code: OK (200)
+     */
+    @Test
+    public void searchByNamePrefixShouldIgnoreCase() {
+        repo.save(new Customer("Alice", "Main Street 1"));
+        repo.save(new Customer("alfred", "Baker Street 2"));
+        repo.save(new Customer("Bob", "Main Street 3"));
+
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(UNIT_RESOURCE + "/search?name=AL", Customer[].class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of matching entries did not match", 2, response.getBody().length);
+    }
+
+    /** Test case: searchByNameAndAddressShouldMatchBoth
+     *
+     * Test if a search on both a name and an address prefix only returns entries matching both
+     */
+    @Test
+    public void searchByNameAndAddressShouldMatchBoth() {
+        repo.save(new Customer("Alice", "Main Street 1"));
+        repo.save(new Customer("alfred", "Baker Street 2"));
+        repo.save(new Customer("Bob", "Main Street 3"));
+
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(UNIT_RESOURCE + "/search?name=al&address=main", Customer[].class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of matching entries did not match", 1, response.getBody().length);
+        assertEquals("Returned entry did not match", "Alice", response.getBody()[0].getName());
+    }
+
+    /** Test case: searchShouldTreatRegexCharactersLiterally
+     *
+     * Test if characters with a special meaning in regular expressions are matched literally
+     */
+    @Test
+    public void searchShouldTreatRegexCharactersLiterally() {
+        repo.save(new Customer("a.b", "address1"));
+        repo.save(new Customer("axb", "address2"));
+
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(UNIT_RESOURCE + "/search?name={name}", Customer[].class, "a.");
+
+        assertEquals("Amount of matching entries did not match", 1, response.getBody().length);
+        assertEquals("Returned entry did not match", "a.b", response.getBody()[0].getName());
+    }
+
+    /** Test case: searchShouldPageInNameOrder
+     *
+     * Test if search results are ordered by name, regardless of case and of the order they were added in
+     * Following the Link header should return the next entries in that order
+     */
+    @Test
+    public void searchShouldPageInNameOrder() throws Exception {
+        repo.save(new Customer("anna", "address1"));
+        repo.save(new Customer("Alan Smith", "address2"));
+        repo.save(new Customer("alice", "address3"));
+        repo.save(new Customer("AL", "address4"));
+
+        ResponseEntity<Customer[]> response = restTemplate.getForEntity(UNIT_RESOURCE + "/search?name=a&limit=2", Customer[].class);
+        assertEquals("First entry did not match", "AL", response.getBody()[0].getName());
+        assertEquals("Second entry did not match", "Alan Smith", response.getBody()[1].getName());
+
+        String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+        assertNotNull("Response did not contain a Link header", link);
+        URI next = new URI(link.substring(link.indexOf('<') + 1, link.indexOf('>')));
+        ResponseEntity<Customer[]> nextResponse = restTemplate.getForEntity(next, Customer[].class);
+        assertEquals("Second page size did not match", 2, nextResponse.getBody().length);
+        assertEquals("Third entry did not match", "alice", nextResponse.getBody()[0].getName());
+        assertEquals("Fourth entry did not match", "anna", nextResponse.getBody()[1].getName());
+    }
+
+    /** Test case: searchShouldPageAcrossStringAndObjectIdsWithTheSameName
+     *
+     * Test if following the Link headers one entry at a time returns every entry exactly once
+     * when customers with the same name have string ids of their own as well as generated object ids
+     */
+    @Test
+    public void searchShouldPageAcrossStringAndObjectIdsWithTheSameName() throws Exception {
+        Customer first = new Customer("anna", "address1");
+        first.setId("customer-a");
+        repo.save(first);
+        Customer second = new Customer("anna", "address2");
+        second.setId("customer-b");
+        repo.save(second);
+        repo.save(new Customer("anna", "address3"));
+        repo.save(new Customer("anna", "address4"));
+
+        List<String> ids = new ArrayList<>();
+        URI url = new URI(UNIT_RESOURCE + "/search?name=anna&limit=1");
+        while (url != null) {
+            ResponseEntity<Customer[]> response = restTemplate.getForEntity(url, Customer[].class);
+            for (Customer customer : response.getBody())
+                ids.add(customer.getId());
+            String link = response.getHeaders().getFirst(HttpHeaders.LINK);
+            url = link == null ? null : new URI(link.substring(link.indexOf('<') + 1, link.indexOf('>')));
+        }
+
+        assertEquals("Number of entries did not match", 4, ids.size());
+        assertEquals("Entries were returned more than once", 4, new HashSet<>(ids).size());
+    }
+
+    /** Test case: searchWithoutCriteriaShouldReturnBadRequest
+     *
+     * Test if a search without a name or address returns HttpStatus code: BAD_REQUEST (400)
+     */
+    @Test
+    public void searchWithoutCriteriaShouldReturnBadRequest() {
+        ResponseEntity<String> response = restTemplate.getForEntity(UNIT_RESOURCE + "/search", String.class);
+        assertEquals("HttpStatus code did not match", HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
     /** Test case: createCustomerShouldCreateCustomer
      *
      * Test if a POST result of a Customer instance results in the Customer being saved to the database
@@ -195,6 +630,28 @@ public class CustomerServiceTest {
         assertEquals("More than one record was added to the database", 1, repo.count());
     }
 
+    /** Test case: createCustomerWithExistingIdShouldOverwriteCustomer
+     *
+     * Test if a POST of a Customer with the id of an existing entry overwrites that entry instead of adding one
+     * The returned entry should have the next version
+     */
+    @Test
+    public void createCustomerWithExistingIdShouldOverwriteCustomer() {
+        Customer existing = repo.save(new Customer(CONSULTANT_1.getName(), CONSULTANT_1.getAddress()));
+
+        Customer overwrite = new Customer(existing.getId(), CONSULTANT_2.getName(), CONSULTANT_2.getAddress());
+        ResponseEntity<Customer> response = restTemplate.postForEntity(UNIT_RESOURCE, overwrite, Customer.class);
+
+        //Check if we receive the correct HttpStatus code
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Returned entry did not keep the ID", existing.getId(), response.getBody().getId());
+        assertEquals("Returned version did not match", Long.valueOf(existing.getVersion() + 1), response.getBody().getVersion());
+
+        //Check if the entry was overwritten
+        assertEquals("name did not match", CONSULTANT_2.getName(), repo.findOne(existing.getId()).getName());
+        assertEquals("An entry was added to the database", 1, repo.count());
+    }
+
     /** Test case: createCustomerWithoutBodyShouldNotAddCustomer
      *
      * Test if a POST request without a body does not result in an entry added to the database
@@ -271,6 +728,138 @@ public class CustomerServiceTest {
         assertEquals("Updated entry was not saved to the database", savedCustomer.getAddress(), updatedCustomer.getAddress());
     }
 
+    /** Test case: getAndEditShouldReturnVersionETag
+     *
+     * Test if GET and PUT responses contain an ETag that changes with every edit
+     */
+    @Test
+    public void getAndEditShouldReturnVersionETag() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+
+        //Check if the GET response contains the ETag of the current version
+        ResponseEntity<Customer> response = restTemplate.getForEntity(url, Customer.class);
+        String eTag = response.getHeaders().getETag();
+        assertNotNull("GET response did not contain an ETag", eTag);
+
+        //Edit the entry with a matching If-Match header
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        requestHeaders.set(HttpHeaders.IF_MATCH, eTag);
+        HttpEntity<Customer> httpEntity = new HttpEntity<>(new Customer("nameEdited", "addressEdited"), requestHeaders);
+        ResponseEntity<Customer> updateResponse = restTemplate.exchange(url, HttpMethod.PUT, httpEntity, Customer.class);
+
+        //Check if the edit succeeded and returned a new ETag
+        assertEquals("HttpStatus code did not match", HttpStatus.OK, updateResponse.getStatusCode());
+        assertNotNull("PUT response did not contain an ETag", updateResponse.getHeaders().getETag());
+        assertNotEquals("ETag did not change after an edit", eTag, updateResponse.getHeaders().getETag());
+    }
+
+    /** Test case: getWithCurrentETagShouldReturnNotModified
+     *
+     * Test if a GET with an If-None-Match header of the current version returns no body
+     * The Http Request response should have HttpStatus code: NOT_MODIFIED (304), and OK (200) again after an edit
+     */
+    @Test
+    public void getWithCurrentETagShouldReturnNotModified() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+        String eTag = restTemplate.getForEntity(url, Customer.class).getHeaders().getETag();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<Customer> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), Customer.class);
+
+        //Check if we receive the correct HttpStatus code, the same ETag and no body
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("ETag did not match", eTag, response.getHeaders().getETag());
+        assertNull("Not modified response should not have a body", response.getBody());
+
+        //Edit the entry and check if the old ETag no longer matches
+        restTemplate.put(url, new Customer("nameEdited", "addressEdited"));
+        response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(requestHeaders), Customer.class);
+        assertEquals("HttpStatus code did not match after an edit", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Edited entry was not returned", "nameEdited", response.getBody().getName());
+    }
+
+    /** Test case: getPersonsWithCurrentETagShouldReturnNotModified
+     *
+     * Test if a GET on the collection with an If-None-Match header of the current collection ETag returns no body
+     * Any write through the service should change the collection ETag
+     */
+    @Test
+    public void getPersonsWithCurrentETagShouldReturnNotModified() {
+        restTemplate.postForEntity(UNIT_RESOURCE, CONSULTANT_1, Customer.class);
+        String eTag = restTemplate.getForEntity(UNIT_RESOURCE, Customer[].class).getHeaders().getETag();
+        assertNotNull("GET response did not contain an ETag", eTag);
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag);
+        ResponseEntity<Customer[]> response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.GET, new HttpEntity<>(requestHeaders), Customer[].class);
+        assertEquals("HttpStatus code did not match", HttpStatus.NOT_MODIFIED, response.getStatusCode());
+
+        //Add an entry and check if the collection is returned again, with a new ETag
+        restTemplate.postForEntity(UNIT_RESOURCE, CONSULTANT_2, Customer.class);
+        response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.GET, new HttpEntity<>(requestHeaders), Customer[].class);
+        assertEquals("HttpStatus code did not match after a create", HttpStatus.OK, response.getStatusCode());
+        assertEquals("Amount of entries did not match", 2, response.getBody().length);
+        assertNotEquals("ETag did not change after a create", eTag, response.getHeaders().getETag());
+
+        //Edit an entry, which keeps the amount of entries, and check if the ETag changes again
+        eTag = response.getHeaders().getETag();
+        Customer edited = response.getBody()[0];
+        edited.setName("nameEdited");
+        HttpHeaders editHeaders = new HttpHeaders();
+        editHeaders.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.exchange(UNIT_RESOURCE + "/" + edited.getId(), HttpMethod.PUT, new HttpEntity<>(edited, editHeaders), Customer.class);
+        requestHeaders.setIfNoneMatch(eTag);
+        response = restTemplate.exchange(UNIT_RESOURCE, HttpMethod.GET, new HttpEntity<>(requestHeaders), Customer[].class);
+        assertEquals("HttpStatus code did not match after an edit", HttpStatus.OK, response.getStatusCode());
+        assertNotEquals("ETag did not change after an edit", eTag, response.getHeaders().getETag());
+    }
+
+    /** Test case: editWithStaleETagShouldReturnPreconditionFailed
+     *
+     * Test if a PUT with an If-Match header of an outdated version does not save the edit
+     * The Http Request response should have HttpStatus code: PRECONDITION_FAILED (412)
+     */
+    @Test
+    public void editWithStaleETagShouldReturnPreconditionFailed() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+        String staleETag = "\"" + (savedCustomer.getVersion() + 1) + "\"";
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        requestHeaders.set(HttpHeaders.IF_MATCH, staleETag);
+        HttpEntity<Customer> httpEntity = new HttpEntity<>(new Customer("nameEdited", "addressEdited"), requestHeaders);
+        ResponseEntity<Customer> response = restTemplate.exchange(url, HttpMethod.PUT, httpEntity, Customer.class);
+
+        //Check if we receive the correct HttpStatus code
+        assertEquals("HttpStatus code did not match", HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+
+        //Check if the edit was not saved to the database
+        assertEquals("Edit was saved despite a stale ETag", CONSULTANT_1.getName(), repo.findOne(savedCustomer.getId()).getName());
+    }
+
+    /** Test case: deleteWithStaleETagShouldReturnPreconditionFailed
+     *
+     * Test if a DELETE with an If-Match header of an outdated version does not delete the entry
+     * The Http Request response should have HttpStatus code: PRECONDITION_FAILED (412)
+     */
+    @Test
+    public void deleteWithStaleETagShouldReturnPreconditionFailed() {
+        Customer savedCustomer = repo.save(CONSULTANT_1);
+        String url = UNIT_RESOURCE + "/" + savedCustomer.getId();
+
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.IF_MATCH, "\"" + (savedCustomer.getVersion() + 1) + "\"");
+        ResponseEntity<Customer> response = restTemplate.exchange(url, HttpMethod.DELETE, new HttpEntity<>(requestHeaders), Customer.class);
+
+        assertEquals("HttpStatus code did not match", HttpStatus.PRECONDITION_FAILED, response.getStatusCode());
+        assertEquals("Entry was deleted despite a stale ETag", 1, repo.count());
+    }
+
     /** Test case: editUnexistingCustomerShouldReturnError
      *
      * Test that when we try to update an unexisting entry the Http Request response does not contain an object
@@ -0,0 +1,103 @@
+package be.foreseegroup.micro.resourceservice.customer.service;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class CustomerWorkQueueTest {
+
+    /** Test case: submittedWorkShouldSetTheResult
+     *
+     * Test if the response produced by the work becomes the result of the request
+     */
+    @Test
+    public void submittedWorkShouldSetTheResult() {
+        CustomerWorkQueue workQueue = new CustomerWorkQueue(Runnable::run, 1000);
+
+        DeferredResult<ResponseEntity<String>> result = workQueue.submit(() -> new ResponseEntity<>("done", HttpStatus.OK));
+
+        assertTrue("Result was not set", result.hasResult());
+        assertEquals("Result did not match", "done", ((ResponseEntity<?>) result.getResult()).getBody());
+    }
+
+    /** Test case: saturatedExecutorShouldShedWithServiceUnavailable
+     *
+     * Test if work that the executor rejects is answered immediately with HttpStatus code: SERVICE_UNAVAILABLE (503)
+     * The work itself should never run
+     */
+    @Test
+    public void saturatedExecutorShouldShedWithServiceUnavailable() {
+        CustomerWorkQueue workQueue = new CustomerWorkQueue(command -> {
+            throw new RejectedExecutionException();
+        }, 1000);
+
+        DeferredResult<ResponseEntity<String>> result = workQueue.submit(() -> {
+            fail("Rejected work should not run");
+            return null;
+        });
+
+        assertTrue("Result was not set", result.hasResult());
+        assertEquals("HttpStatus code did not match", HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+    }
+
+    /** Test case: workThatDidNotStartShouldTimeOut
+     *
+     * Test if work that is still queued when the timeout expires is answered with HttpStatus code: SERVICE_UNAVAILABLE (503)
+     * The work should be skipped when it is dequeued afterwards
+     */
+    @Test
+    public void workThatDidNotStartShouldTimeOut() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        CustomerWorkQueue workQueue = new CustomerWorkQueue(queued::add, 50);
+        try {
+            DeferredResult<ResponseEntity<String>> result = workQueue.submit(() -> {
+                fail("Timed out work should not run");
+                return null;
+            });
+
+            awaitResult(result);
+            assertEquals("HttpStatus code did not match", HttpStatus.SERVICE_UNAVAILABLE, ((ResponseEntity<?>) result.getResult()).getStatusCode());
+            queued.get(0).run();
+        } finally {
+            workQueue.destroy();
+        }
+    }
+
+    /** Test case: startedWorkShouldNotTimeOut
+     *
+     * Test if work that started before the timeout expired answers with its own result, however long it takes
+     */
+    @Test
+    public void startedWorkShouldNotTimeOut() throws Exception {
+        CustomerWorkQueue workQueue = new CustomerWorkQueue(command -> new Thread(command).start(), 50);
+        try {
+            DeferredResult<ResponseEntity<String>> result = workQueue.submit(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ResponseEntity<>("done", HttpStatus.OK);
+            });
+
+            awaitResult(result);
+            assertEquals("Result did not match", "done", ((ResponseEntity<?>) result.getResult()).getBody());
+        } finally {
+            workQueue.destroy();
+        }
+    }
+
+    private static void awaitResult(DeferredResult<?> result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertTrue("Result was not set", result.hasResult());
+    }
+}
@@ -0,0 +1,38 @@
+package be.foreseegroup.micro.resourceservice.customer.startup;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.Assert.*;
+
+public class LazyInitPostProcessorTest {
+
+    /** Test case: onlyBeansInLazyPackagesShouldBeDeferred
+     *
+     * Test if beans of a configured package, and beans declared by a configuration in that package, become lazy
+     * Other beans should stay eager
+     */
+    @Test
+    public void onlyBeansInLazyPackagesShouldBeDeferred() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("deferred", new RootBeanDefinition("com.example.deferred.Bean"));
+        beanFactory.registerBeanDefinition("deferredConfiguration", new RootBeanDefinition("com.example.deferred.Configuration"));
+        RootBeanDefinition declared = new RootBeanDefinition();
+        declared.setFactoryBeanName("deferredConfiguration");
+        declared.setFactoryMethodName("bean");
+        beanFactory.registerBeanDefinition("declared", declared);
+        beanFactory.registerBeanDefinition("eager", new RootBeanDefinition("com.example.eager.Bean"));
+
+        LazyInitPostProcessor postProcessor = new LazyInitPostProcessor();
+        postProcessor.setEnvironment(new MockEnvironment()
+                .withProperty("customers.startup.lazy-init", "true")
+                .withProperty("customers.startup.lazy-packages", "com.example.deferred."));
+        postProcessor.postProcessBeanFactory(beanFactory);
+
+        assertTrue("Bean in a lazy package was not deferred", beanFactory.getBeanDefinition("deferred").isLazyInit());
+        assertTrue("Bean declared in a lazy package was not deferred", beanFactory.getBeanDefinition("declared").isLazyInit());
+        assertFalse("Other bean should not be deferred", beanFactory.getBeanDefinition("eager").isLazyInit());
+    }
+}